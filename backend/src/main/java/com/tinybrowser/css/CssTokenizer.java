@@ -1,22 +1,24 @@
 package com.tinybrowser.css;
 
+import com.tinybrowser.util.CharScanner;
+
 public class CssTokenizer {
-    private final String input;
+    private final char[] input;
     private int position;
 
     public CssTokenizer(String input) {
-        this.input = input != null ? input : "";
+        this.input = input != null ? input.toCharArray() : new char[0];
         this.position = 0;
     }
 
     public CssToken nextToken() {
         skipWhitespaceAndComments();
 
-        if (position >= input.length()) {
+        if (position >= input.length) {
             return new CssToken(CssTokenType.EOF);
         }
 
-        char current = input.charAt(position);
+        char current = input[position];
 
         // Single-character tokens
         switch (current) {
@@ -43,30 +45,21 @@ public class CssTokenizer {
     }
 
     private CssToken parseIdentifier() {
-        StringBuilder value = new StringBuilder();
-
-        while (position < input.length()) {
-            char ch = input.charAt(position);
+        int start = position;
 
-            // Selector can include: a-z, A-Z, 0-9, -, _, ., #, *, >
-            // Stop at whitespace or special CSS characters
-            if (Character.isWhitespace(ch) || ch == '{' || ch == '}' ||
-                ch == ':' || ch == ';' || ch == ',') {
-                break;
-            }
-
-            value.append(ch);
-            position++;
-        }
+        // Selector can include: a-z, A-Z, 0-9, -, _, ., #, *, >
+        // Stop at whitespace or special CSS characters
+        int end = CharScanner.indexOfCssDelimiter(input, position, input.length);
+        position = end >= 0 ? end : input.length;
 
         // Return a generic token - parser will determine if it's SELECTOR, PROPERTY, or VALUE
         // based on context
-        return new CssToken(CssTokenType.SELECTOR, value.toString().trim());
+        return new CssToken(CssTokenType.SELECTOR, new String(input, start, position - start).trim());
     }
 
     private void skipWhitespaceAndComments() {
-        while (position < input.length()) {
-            char ch = input.charAt(position);
+        while (position < input.length) {
+            char ch = input[position];
 
             if (Character.isWhitespace(ch)) {
                 position++;
@@ -74,16 +67,19 @@ public class CssTokenizer {
             }
 
             // Check for CSS comments /* */
-            if (ch == '/' && position + 1 < input.length() && input.charAt(position + 1) == '*') {
+            if (ch == '/' && position + 1 < input.length && input[position + 1] == '*') {
                 position += 2; // Skip /*
-                while (position < input.length()) {
-                    if (position + 1 < input.length() &&
-                        input.charAt(position) == '*' &&
-                        input.charAt(position + 1) == '/') {
-                        position += 2; // Skip */
+                while (true) {
+                    int star = CharScanner.indexOf(input, position, input.length, '*');
+                    if (star < 0) {
+                        position = input.length;
+                        break;
+                    }
+                    if (star + 1 < input.length && input[star + 1] == '/') {
+                        position = star + 2; // Skip */
                         break;
                     }
-                    position++;
+                    position = star + 1;
                 }
                 continue;
             }
@@ -98,6 +94,6 @@ public class CssTokenizer {
 
     public boolean hasMoreTokens() {
         skipWhitespaceAndComments();
-        return position < input.length();
+        return position < input.length;
     }
 }
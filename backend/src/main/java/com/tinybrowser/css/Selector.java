@@ -1,5 +1,7 @@
 package com.tinybrowser.css;
 
+import com.tinybrowser.dom.Atoms;
+import com.tinybrowser.dom.ClassList;
 import com.tinybrowser.dom.Element;
 
 import java.util.ArrayList;
@@ -7,6 +9,7 @@ import java.util.List;
 
 public class Selector {
     private String tagName;  // null means any tag
+    private int tagId;
     private String id;       // null means no id requirement
     private List<String> classes;
 
@@ -72,7 +75,7 @@ public class Selector {
 
         String tag = tagBuilder.toString().trim();
         if (!tag.isEmpty()) {
-            this.tagName = tag;
+            assignTagName(tag);
         }
     }
 
@@ -81,9 +84,14 @@ public class Selector {
             return false;
         }
 
-        // Check tag name
-        if (tagName != null && !tagName.equals(element.getTagName())) {
-            return false;
+        // Check tag name; known tags compare by id and the rest by name
+        if (tagName != null) {
+            boolean sameTag = tagId != Atoms.UNKNOWN_TAG
+                ? tagId == element.getTagId()
+                : tagName.equals(element.getTagName());
+            if (!sameTag) {
+                return false;
+            }
         }
 
         // Check ID
@@ -94,23 +102,11 @@ public class Selector {
             }
         }
 
-        // Check classes
+        // Check classes against the element's parsed class list
         if (!classes.isEmpty()) {
-            String classAttr = element.getAttribute("class");
-            if (classAttr == null || classAttr.isEmpty()) {
-                return false;
-            }
-
-            String[] elementClasses = classAttr.split("\\s+");
+            ClassList elementClasses = element.getClassList();
             for (String requiredClass : classes) {
-                boolean found = false;
-                for (String elementClass : elementClasses) {
-                    if (requiredClass.equals(elementClass)) {
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
+                if (!elementClasses.contains(requiredClass)) {
                     return false;
                 }
             }
@@ -149,7 +145,12 @@ public class Selector {
     }
 
     public void setTagName(String tagName) {
-        this.tagName = tagName;
+        assignTagName(tagName);
+    }
+
+    private void assignTagName(String tagName) {
+        this.tagName = tagName != null ? Atoms.intern(tagName) : null;
+        this.tagId = Atoms.tagId(this.tagName);
     }
 
     public String getId() {
@@ -0,0 +1,178 @@
+package com.tinybrowser.css;
+
+import com.tinybrowser.dom.Document;
+import com.tinybrowser.dom.DocumentStatistics;
+import com.tinybrowser.dom.Element;
+import com.tinybrowser.dom.Node;
+import com.tinybrowser.dom.TreeWalker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled selector list for querySelector and querySelectorAll. A single compound
+ * selector starts from the most selective index the document has for it - the id index,
+ * then whichever of the class and tag collections the document statistics say is smaller -
+ * and checks the rest of the selector only on those candidates. Lists of several
+ * selectors, and selectors with nothing to index on, scan the tree once.
+ */
+public final class SelectorQuery {
+    private static final int CACHE_LIMIT = 256;
+    private static final Map<String, SelectorQuery> CACHE = new ConcurrentHashMap<>();
+
+    private final List<Selector> selectors;
+
+    private SelectorQuery(List<Selector> selectors) {
+        this.selectors = selectors;
+    }
+
+    // Compiled queries are cached by their text, so a query repeated in a loop is parsed once
+    public static SelectorQuery compile(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Selector cannot be null");
+        }
+        SelectorQuery query = CACHE.get(text);
+        if (query == null) {
+            query = new SelectorQuery(parse(text));
+            if (CACHE.size() >= CACHE_LIMIT) {
+                CACHE.clear();
+            }
+            CACHE.put(text, query);
+        }
+        return query;
+    }
+
+    private static List<Selector> parse(String text) {
+        List<Selector> selectors = new ArrayList<>();
+        for (String part : text.split(",", -1)) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                throw new IllegalArgumentException("Empty selector in: " + text);
+            }
+            for (int i = 0; i < trimmed.length(); i++) {
+                char ch = trimmed.charAt(i);
+                // Selector only understands tag, id and class parts, so combinators, attribute
+                // selectors and pseudo-classes are refused rather than silently read as part of
+                // a name that matches nothing
+                if (Character.isWhitespace(ch) || ch == '>' || ch == '+' || ch == '~') {
+                    throw new IllegalArgumentException("Unsupported combinator in selector: " + trimmed);
+                }
+                if (ch == '[' || ch == ':' || ch == '(') {
+                    throw new IllegalArgumentException("Unsupported selector syntax: " + trimmed);
+                }
+            }
+            // "*.note" is the same as ".note"
+            if (trimmed.length() > 1 && trimmed.charAt(0) == '*') {
+                trimmed = trimmed.substring(1);
+            }
+            selectors.add(new Selector(trimmed));
+        }
+        return Collections.unmodifiableList(selectors);
+    }
+
+    public Element first(Document document) {
+        List<Element> found = run(document, null, true);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public List<Element> all(Document document) {
+        return Collections.unmodifiableList(run(document, null, false));
+    }
+
+    // Descendants of scope only, as in the DOM; scope itself never matches
+    public Element first(Element scope) {
+        List<Element> found = run(scope.getOwnerDocument(), scope, true);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public List<Element> all(Element scope) {
+        return Collections.unmodifiableList(run(scope.getOwnerDocument(), scope, false));
+    }
+
+    private List<Element> run(Document document, Element scope, boolean firstOnly) {
+        List<Element> candidates = document != null && selectors.size() == 1
+            ? candidates(document, selectors.get(0))
+            : null;
+        if (candidates == null) {
+            Node root = scope != null ? scope : document != null ? document.getRootElement() : null;
+            return scan(root, scope, firstOnly);
+        }
+
+        Selector selector = selectors.get(0);
+        List<Element> result = new ArrayList<>();
+        for (Element candidate : candidates) {
+            if (selector.matches(candidate) && (scope == null || isDescendant(candidate, scope))) {
+                result.add(candidate);
+                if (firstOnly) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Elements in document order that include every match, or null when only a scan will do
+    private static List<Element> candidates(Document document, Selector selector) {
+        if (selector.getId() != null) {
+            return document.getElementsById(selector.getId());
+        }
+
+        DocumentStatistics statistics = document.getStatistics();
+        String bestClass = null;
+        int bestCount = Integer.MAX_VALUE;
+        for (String className : selector.getClasses()) {
+            int count = statistics.getClassCount(className);
+            if (count < bestCount) {
+                bestClass = className;
+                bestCount = count;
+            }
+        }
+        String tagName = selector.getTagName();
+        if (tagName != null && statistics.getTagCount(tagName) < bestCount) {
+            return document.getElementsByTagName(tagName);
+        }
+        if (bestClass != null) {
+            return document.getElementsByClassName(bestClass);
+        }
+        return null;
+    }
+
+    private List<Element> scan(Node root, Element scope, boolean firstOnly) {
+        List<Element> result = new ArrayList<>();
+        if (root == null) {
+            return result;
+        }
+        TreeWalker walker = new TreeWalker(root);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if (node != scope && node instanceof Element element && matchesAny(element)) {
+                result.add(element);
+                if (firstOnly) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean matchesAny(Element element) {
+        for (Selector selector : selectors) {
+            if (selector.matches(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDescendant(Node node, Element ancestor) {
+        for (Node current = node.getParent(); current != null; current = current.getParent()) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,140 @@
+package com.tinybrowser.dom;
+
+import java.util.List;
+
+// Element facade over a DomArena node
+final class ArenaElement extends Element implements ArenaNode {
+    private final DomArena arena;
+    private final int index;
+
+    ArenaElement(DomArena arena, int index, String tagName, int tagId) {
+        super(tagName, tagId);
+        this.arena = arena;
+        this.index = index;
+    }
+
+    @Override
+    public DomArena arena() {
+        return arena;
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public void appendChild(Node child) {
+        arena.appendChild(index, arenaIndexOf(child));
+    }
+
+    @Override
+    public void removeChild(Node child) {
+        arena.removeChild(index, arenaIndexOf(child));
+    }
+
+    @Override
+    public void removeAllChildren() {
+        arena.removeAllChildren(index);
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return arena.childrenOf(index);
+    }
+
+    @Override
+    Node childAt(int i) {
+        int child = arena.childAt(index, i);
+        return child < 0 ? null : arena.node(child);
+    }
+
+    @Override
+    Node siblingAfter(Node parent, int i) {
+        int next = arena.nextSiblingOf(index);
+        return next < 0 ? null : arena.node(next);
+    }
+
+    @Override
+    public Node getParent() {
+        return arena.parentOf(index);
+    }
+
+    @Override
+    public boolean hasChildren() {
+        return arena.hasChildren(index);
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        int attr = arena.findAttribute(index, atomOf(name));
+        return attr < 0 ? null : arena.attributeValue(attr);
+    }
+
+    @Override
+    public CharSequence getAttributeCharacters(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public void setAttribute(String name, CharSequence value) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Attribute name cannot be null or blank");
+        }
+        arena.setAttribute(index, Atoms.intern(name), value != null ? value : "");
+    }
+
+    @Override
+    public ClassList getClassList() {
+        return arena.classListOf(index);
+    }
+
+    @Override
+    public boolean hasAttribute(String name) {
+        return arena.findAttribute(index, atomOf(name)) >= 0;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return arena.attributeCount(index);
+    }
+
+    @Override
+    public String getAttributeName(int i) {
+        return arena.attributeName(index, i);
+    }
+
+    @Override
+    public String getAttributeValue(int i) {
+        return arena.attributeValue(arena.attributeAt(index, i));
+    }
+
+    // The arena has no room for a loader, so deferred attributes are stored right away
+    @Override
+    public void setDeferredAttributes(AttributeLoader loader) {
+        if (loader != null) {
+            loader.load((name, value) -> {
+                if (!hasAttribute(name)) {
+                    setAttribute(name, value);
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ArenaElement element && element.arena == arena && element.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(arena) + index;
+    }
+
+    private static String atomOf(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Attribute name cannot be null");
+        }
+        return Atoms.intern(name);
+    }
+}
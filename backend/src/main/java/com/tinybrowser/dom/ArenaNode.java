@@ -0,0 +1,19 @@
+package com.tinybrowser.dom;
+
+// Implemented by the facades over a DomArena
+interface ArenaNode {
+    DomArena arena();
+
+    int index();
+
+    // Index of child in this node's arena; nodes from elsewhere cannot be linked in
+    default int arenaIndexOf(Node child) {
+        if (child == null) {
+            throw new IllegalArgumentException("Child node cannot be null");
+        }
+        if (!(child instanceof ArenaNode node) || node.arena() != arena()) {
+            throw new IllegalArgumentException("Child node belongs to a different arena");
+        }
+        return node.index();
+    }
+}
@@ -0,0 +1,77 @@
+package com.tinybrowser.dom;
+
+import java.util.Collections;
+import java.util.List;
+
+// TextNode facade over a DomArena node
+final class ArenaTextNode extends TextNode implements ArenaNode {
+    private final DomArena arena;
+    private final int index;
+
+    ArenaTextNode(DomArena arena, int index) {
+        super("");
+        this.arena = arena;
+        this.index = index;
+    }
+
+    @Override
+    public DomArena arena() {
+        return arena;
+    }
+
+    @Override
+    public int index() {
+        return index;
+    }
+
+    @Override
+    public String getText() {
+        return arena.text(index);
+    }
+
+    @Override
+    public CharSequence getCharacters() {
+        return arena.text(index);
+    }
+
+    @Override
+    public void setText(CharSequence text) {
+        arena.setText(index, text != null ? text : "");
+    }
+
+    @Override
+    public void appendChild(Node child) {
+        throw new IllegalArgumentException("Text nodes cannot have children");
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    Node siblingAfter(Node parent, int i) {
+        int next = arena.nextSiblingOf(index);
+        return next < 0 ? null : arena.node(next);
+    }
+
+    @Override
+    public Node getParent() {
+        return arena.parentOf(index);
+    }
+
+    @Override
+    public boolean hasChildren() {
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ArenaTextNode text && text.arena == arena && text.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(arena) + index;
+    }
+}
@@ -0,0 +1,212 @@
+package com.tinybrowser.dom;
+
+import java.util.Locale;
+
+/**
+ * Shared table of canonical lower-case tag and attribute names. Known HTML tags carry a
+ * small integer id for array-indexed lookups.
+ *
+ * Lookups are lock-free reads of an open-addressing table; only inserting a new name
+ * synchronizes. Names that are not known in advance are added up to a fixed limit so
+ * documents with endless distinct names cannot grow the table without bound. Past the
+ * limit a new name comes back lower-cased but not canonical, so only the names seeded
+ * here are safe to compare by identity; anything else is compared with equals, which
+ * still checks identity first.
+ */
+public final class Atoms {
+    private static final String[] KNOWN_TAGS = {
+        null, // id 0 is reserved for tags without a pre-assigned id
+        "html", "head", "body", "title", "meta", "link", "style", "script", "base", "noscript",
+        "template", "div", "span", "p", "a", "img", "br", "hr", "h1", "h2", "h3", "h4", "h5", "h6",
+        "ul", "ol", "li", "dl", "dt", "dd", "table", "caption", "colgroup", "col", "thead", "tbody",
+        "tfoot", "tr", "td", "th", "form", "input", "button", "select", "option", "optgroup",
+        "textarea", "label", "fieldset", "legend", "header", "footer", "section", "article", "nav",
+        "aside", "main", "figure", "figcaption", "blockquote", "pre", "code", "em", "strong", "b",
+        "i", "u", "s", "small", "sub", "sup", "mark", "abbr", "cite", "q", "time", "iframe",
+        "video", "audio", "source", "track", "canvas", "svg", "picture", "address", "details",
+        "summary", "dialog", "menu", "xmp", "plaintext", "noembed", "noframes", "object", "embed",
+        "param", "wbr", "area", "map", "kbd", "samp", "var", "del", "ins", "rb", "rt", "rp",
+        "rtc", "ruby", "data", "output", "progress", "meter", "datalist", "hgroup", "search"
+    };
+
+    private static final String[] KNOWN_ATTRIBUTES = {
+        "id", "class", "style", "href", "src", "alt", "title", "type", "name", "value", "rel",
+        "lang", "dir", "width", "height", "action", "method", "target", "for", "placeholder",
+        "disabled", "checked", "selected", "readonly", "required", "multiple", "content",
+        "charset", "http-equiv", "role", "tabindex", "colspan", "rowspan", "srcset", "sizes",
+        "loading", "async", "defer", "crossorigin", "integrity", "media", "hidden", "onclick",
+        "onload", "aria-label", "aria-hidden", "data-id"
+    };
+
+    private static final int MAX_ATOMS = 16384;
+
+    private static volatile Table table = new Table(256);
+    private static int size;
+
+    static {
+        for (int id = 1; id < KNOWN_TAGS.length; id++) {
+            add(KNOWN_TAGS[id], id);
+        }
+        for (String name : KNOWN_ATTRIBUTES) {
+            add(name, 0);
+        }
+    }
+
+    // Number of pre-assigned tag ids; valid ids are 1 .. TAG_COUNT - 1
+    public static final int TAG_COUNT = KNOWN_TAGS.length;
+    public static final int UNKNOWN_TAG = 0;
+
+    public static final int HTML = tagId("html");
+    public static final int HEAD = tagId("head");
+    public static final int BODY = tagId("body");
+
+    private Atoms() {
+    }
+
+    public static String intern(CharSequence name) {
+        return intern(name, 0, name.length());
+    }
+
+    public static String intern(CharSequence name, int start, int end) {
+        int hash = 0;
+        boolean lowerCase = true;
+        for (int i = start; i < end; i++) {
+            char ch = name.charAt(i);
+            if (ch >= 0x80) {
+                // Non-ASCII names take the full Unicode lower-casing path
+                String lowered = name.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+                return find(lowered, 0, lowered.length(), lowered.hashCode(), lowered);
+            }
+            if (ch >= 'A' && ch <= 'Z') {
+                ch += 'a' - 'A';
+                lowerCase = false;
+            }
+            hash = 31 * hash + ch;
+        }
+
+        String candidate = lowerCase && start == 0 && end == name.length() && name instanceof String
+            ? (String) name
+            : null;
+        return find(name, start, end, hash, candidate);
+    }
+
+    // Returns the pre-assigned id of a known tag name, or UNKNOWN_TAG
+    public static int tagId(String name) {
+        if (name == null) {
+            return UNKNOWN_TAG;
+        }
+        Table current = table;
+        int hash = name.hashCode();
+        for (int i = mix(hash) & current.mask; ; i = (i + 1) & current.mask) {
+            String atom = current.atoms[i];
+            if (atom == null) {
+                return UNKNOWN_TAG;
+            }
+            if (atom == name || (atom.hashCode() == hash && atom.equals(name))) {
+                return current.ids[i];
+            }
+        }
+    }
+
+    public static String tagName(int tagId) {
+        return tagId > 0 && tagId < TAG_COUNT ? KNOWN_TAGS[tagId] : null;
+    }
+
+    private static String find(CharSequence name, int start, int end, int hash, String candidate) {
+        Table current = table;
+        for (int i = mix(hash) & current.mask; ; i = (i + 1) & current.mask) {
+            String atom = current.atoms[i];
+            if (atom == null) {
+                break;
+            }
+            if (atom.hashCode() == hash && matches(atom, name, start, end)) {
+                return atom;
+            }
+        }
+
+        String atom = candidate != null ? candidate : lowerCaseAscii(name, start, end);
+        return add(atom, 0);
+    }
+
+    private static synchronized String add(String atom, int tagId) {
+        // Another thread may have added it since the lock-free probe
+        Table current = table;
+        int hash = atom.hashCode();
+        int i = mix(hash) & current.mask;
+        for (; current.atoms[i] != null; i = (i + 1) & current.mask) {
+            if (current.atoms[i].equals(atom)) {
+                return current.atoms[i];
+            }
+        }
+
+        if (size >= MAX_ATOMS) {
+            return atom;
+        }
+
+        if ((size + 1) * 2 > current.atoms.length) {
+            Table larger = new Table(current.atoms.length * 2);
+            for (int j = 0; j < current.atoms.length; j++) {
+                if (current.atoms[j] != null) {
+                    larger.put(current.atoms[j], current.ids[j]);
+                }
+            }
+            larger.put(atom, tagId);
+            table = larger;
+        } else {
+            current.ids[i] = tagId;
+            current.atoms[i] = atom;
+        }
+        size++;
+        return atom;
+    }
+
+    private static boolean matches(String atom, CharSequence name, int start, int end) {
+        if (atom.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < atom.length(); i++) {
+            char ch = name.charAt(start + i);
+            if (ch >= 'A' && ch <= 'Z') {
+                ch += 'a' - 'A';
+            }
+            if (atom.charAt(i) != ch) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String lowerCaseAscii(CharSequence name, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            char ch = name.charAt(start + i);
+            chars[i] = ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch;
+        }
+        return new String(chars);
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Table {
+        final String[] atoms;
+        final int[] ids;
+        final int mask;
+
+        Table(int capacity) {
+            atoms = new String[capacity];
+            ids = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        void put(String atom, int tagId) {
+            int i = mix(atom.hashCode()) & mask;
+            while (atoms[i] != null) {
+                i = (i + 1) & mask;
+            }
+            ids[i] = tagId;
+            atoms[i] = atom;
+        }
+    }
+}
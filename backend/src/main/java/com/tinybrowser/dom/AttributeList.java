@@ -0,0 +1,103 @@
+package com.tinybrowser.dom;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Attribute storage of an Element: names (atoms) and values in parallel arrays, in the
+// order they were set. Most elements have a handful, which a linear scan finds faster
+// than hashing; past HASHED_ABOVE a name -> index map is built and kept alongside.
+final class AttributeList {
+    private static final int HASHED_ABOVE = 8;
+    private static final String[] NO_NAMES = new String[0];
+    private static final CharSequence[] NO_VALUES = new CharSequence[0];
+
+    private String[] names = NO_NAMES;
+    private CharSequence[] values = NO_VALUES;
+    private int size;
+    private Map<String, Integer> index;
+
+    int size() {
+        return size;
+    }
+
+    String name(int i) {
+        return names[i];
+    }
+
+    CharSequence value(int i) {
+        return values[i];
+    }
+
+    AttributeList copy() {
+        AttributeList copy = new AttributeList();
+        for (int i = 0; i < size; i++) {
+            copy.add(names[i], values[i]);
+        }
+        return copy;
+    }
+
+    void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        index = null;
+    }
+
+    void setValue(int i, CharSequence value) {
+        values[i] = value;
+    }
+
+    int indexOf(String atom) {
+        if (index != null) {
+            Integer i = index.get(atom);
+            return i != null ? i : -1;
+        }
+        // Atoms are usually the same instance, which String.equals checks first
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(atom)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    CharSequence get(String atom) {
+        int i = indexOf(atom);
+        return i >= 0 ? values[i] : null;
+    }
+
+    void put(String atom, CharSequence value) {
+        int i = indexOf(atom);
+        if (i >= 0) {
+            values[i] = value;
+        } else {
+            add(atom, value);
+        }
+    }
+
+    void putIfAbsent(String atom, CharSequence value) {
+        if (indexOf(atom) < 0) {
+            add(atom, value);
+        }
+    }
+
+    private void add(String atom, CharSequence value) {
+        if (size == names.length) {
+            int capacity = Math.max(4, size * 2);
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        names[size] = atom;
+        values[size] = value;
+        size++;
+
+        if (index != null) {
+            index.put(atom, size - 1);
+        } else if (size > HASHED_ABOVE) {
+            index = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                index.put(names[i], i);
+            }
+        }
+    }
+}
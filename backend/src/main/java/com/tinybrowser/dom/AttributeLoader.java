@@ -0,0 +1,13 @@
+package com.tinybrowser.dom;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Attributes an element was created without, parsed only when first needed. The parser
+ * always sets id and class on the element directly, so selector matching and id lookups
+ * never trigger a load.
+ */
+public interface AttributeLoader {
+    // Passes every deferred attribute to sink in source order
+    void load(BiConsumer<String, CharSequence> sink);
+}
@@ -0,0 +1,64 @@
+package com.tinybrowser.dom;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Read-only Map view of an element's attributes over its indexed accessors, so
+// Element.getAttributes() costs one allocation per element rather than one per call
+final class AttributeMap extends AbstractMap<String, String> {
+    private final Element element;
+
+    AttributeMap(Element element) {
+        this.element = element;
+    }
+
+    @Override
+    public int size() {
+        return element.getAttributeCount();
+    }
+
+    @Override
+    public String get(Object key) {
+        return key instanceof String name ? element.getAttribute(name) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String name && element.hasAttribute(name);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return element.getAttributeCount();
+            }
+
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < element.getAttributeCount();
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = next++;
+                        return Map.entry(element.getAttributeName(i), element.getAttributeValue(i));
+                    }
+                };
+            }
+        };
+    }
+}
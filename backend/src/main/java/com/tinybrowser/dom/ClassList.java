@@ -0,0 +1,88 @@
+package com.tinybrowser.dom;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The classes of a class attribute, split on ASCII whitespace once, without duplicates and
+ * in order of first appearance. Names are compared with equals; long lists also get a
+ * hash set. A single-class attribute held as a String is used as is, without a copy.
+ */
+public final class ClassList {
+    public static final ClassList EMPTY = new ClassList(new String[0]);
+
+    private static final int HASHED_ABOVE = 8;
+
+    private final String[] names;
+    private final Set<String> hashed;
+
+    private ClassList(String[] names) {
+        this.names = names;
+        this.hashed = names.length > HASHED_ABOVE ? new HashSet<>(Arrays.asList(names)) : null;
+    }
+
+    public static ClassList parse(CharSequence value) {
+        if (value == null) {
+            return EMPTY;
+        }
+        String[] names = new String[4];
+        int count = 0;
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && isWhitespace(value.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isWhitespace(value.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String name = start == 0 && i == length && value instanceof String whole
+                    ? whole
+                    : value.subSequence(start, i).toString();
+                if (indexOf(names, count, name) < 0) {
+                    if (count == names.length) {
+                        names = Arrays.copyOf(names, count * 2);
+                    }
+                    names[count++] = name;
+                }
+            }
+        }
+        return count == 0 ? EMPTY : new ClassList(Arrays.copyOf(names, count));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String get(int index) {
+        return names[index];
+    }
+
+    public boolean contains(String name) {
+        if (hashed != null) {
+            return hashed.contains(name);
+        }
+        return indexOf(names, names.length, name) >= 0;
+    }
+
+    private static int indexOf(String[] names, int count, String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\f' || ch == '\r';
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", names);
+    }
+}
@@ -1,19 +1,41 @@
 package com.tinybrowser.dom;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.tinybrowser.css.SelectorQuery;
+
+public final class Document {
+    private static final int MAX_CACHED_COLLECTIONS = 32;
 
-public class Document {
     private Element rootElement;
     private String doctype;
+    // id -> the Element with it, or a List of Elements when the id is duplicated. Kept up
+    // to date by Node and Element as the tree changes; arena trees are not indexed.
+    private final Map<String, Object> idIndex = new HashMap<>();
+    // Bumped by every change to the tree or to a class attribute in it; collections handed
+    // out below recollect when it has moved on
+    private int generation;
+    private final Map<String, List<Element>> tagCollections = collectionCache();
+    private final Map<String, List<Element>> classCollections = collectionCache();
+    private DocumentStatistics statistics;
+    // Queued changes while recording, null otherwise so an idle document pays nothing
+    private List<MutationRecord> mutationRecords;
 
     public Document() {
         this.doctype = "";
     }
 
     public Document(Element rootElement) {
-        this.rootElement = rootElement;
         this.doctype = "";
+        setRootElement(rootElement);
     }
 
     public Element getRootElement() {
@@ -21,7 +43,74 @@ public class Document {
     }
 
     public void setRootElement(Element rootElement) {
+        if (this.rootElement != null && !(this.rootElement instanceof ArenaNode)) {
+            this.rootElement.setOwnerDocument(null);
+        }
         this.rootElement = rootElement;
+        if (rootElement != null && !(rootElement instanceof ArenaNode)) {
+            rootElement.setOwnerDocument(this);
+        }
+        mutated();
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    void mutated() {
+        generation++;
+    }
+
+    // Starts or stops queueing a MutationRecord for every change to the tree; stopping
+    // drops anything not yet taken
+    public void setRecordingMutations(boolean recording) {
+        if (!recording) {
+            mutationRecords = null;
+        } else if (mutationRecords == null) {
+            mutationRecords = new ArrayList<>();
+        }
+    }
+
+    public boolean isRecordingMutations() {
+        return mutationRecords != null;
+    }
+
+    // The records queued since the last call, oldest first
+    public List<MutationRecord> takeMutationRecords() {
+        if (mutationRecords == null || mutationRecords.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<MutationRecord> taken = mutationRecords;
+        mutationRecords = new ArrayList<>();
+        return taken;
+    }
+
+    void record(MutationRecord record) {
+        if (mutationRecords != null) {
+            mutationRecords.add(record);
+        }
+    }
+
+    // Counts for query planning, gathered by one walk of the tree on first use
+    public DocumentStatistics getStatistics() {
+        if (statistics == null) {
+            DocumentStatistics gathered = new DocumentStatistics();
+            for (Element element : collectElements(element -> true)) {
+                gathered.addElement(element);
+            }
+            statistics = gathered;
+        }
+        return statistics;
+    }
+
+    // First element in document order matching the selector list, or null
+    public Element querySelector(String selectors) {
+        return SelectorQuery.compile(selectors).first(this);
+    }
+
+    // All matching elements in document order, as a snapshot
+    public List<Element> querySelectorAll(String selectors) {
+        return SelectorQuery.compile(selectors).all(this);
     }
 
     public String getDoctype() {
@@ -32,50 +121,192 @@ public class Document {
         this.doctype = doctype;
     }
 
+    // Live, read-only list of the elements with this tag name in document order. The same
+    // list is returned for the same name and is only recollected after a mutation.
     public List<Element> getElementsByTagName(String tagName) {
-        List<Element> result = new ArrayList<>();
-        if (rootElement != null) {
-            collectElementsByTagName(rootElement, tagName.toLowerCase(), result);
+        if (tagName == null) {
+            throw new IllegalArgumentException("Tag name cannot be null");
         }
-        return result;
+        String atom = Atoms.intern(tagName);
+        int tagId = Atoms.tagId(atom);
+        Predicate<Element> filter = tagId != Atoms.UNKNOWN_TAG
+            ? element -> element.getTagId() == tagId
+            : element -> atom.equals(element.getTagName());
+        return collection(tagCollections, atom, filter);
     }
 
-    private void collectElementsByTagName(Node node, String tagName, List<Element> result) {
-        if (node instanceof Element) {
-            Element element = (Element) node;
-            if (element.getTagName().equals(tagName)) {
-                result.add(element);
+    // Live, read-only list of the elements that have every class in the whitespace
+    // separated list, in document order
+    public List<Element> getElementsByClassName(String classNames) {
+        if (classNames == null) {
+            throw new IllegalArgumentException("Class names cannot be null");
+        }
+        String[] required = classNames.trim().split("\\s+");
+        if (required[0].isEmpty()) {
+            return Collections.emptyList();
+        }
+        return collection(classCollections, classNames, element -> {
+            for (String name : required) {
+                if (!element.hasClass(name)) {
+                    return false;
+                }
             }
+            return true;
+        });
+    }
+
+    private List<Element> collection(Map<String, List<Element>> cache, String key, Predicate<Element> filter) {
+        // Arena trees change without telling the document, so they get a fresh snapshot
+        if (rootElement instanceof ArenaNode) {
+            return Collections.unmodifiableList(collectElements(filter));
         }
+        return cache.computeIfAbsent(key, k -> new ElementCollection(this, filter));
+    }
 
-        for (Node child : node.getChildren()) {
-            collectElementsByTagName(child, tagName, result);
+    // The most recently used collections per kind; an evicted one stays live for whoever
+    // holds it, a later query just gets a new instance
+    private static Map<String, List<Element>> collectionCache() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Element>> eldest) {
+                return size() > MAX_CACHED_COLLECTIONS;
+            }
+        };
+    }
+
+    List<Element> collectElements(Predicate<Element> filter) {
+        List<Element> result = new ArrayList<>();
+        if (rootElement == null) {
+            return result;
+        }
+        TreeWalker walker = new TreeWalker(rootElement);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if (node instanceof Element element && filter.test(element)) {
+                result.add(element);
+            }
         }
+        return result;
     }
 
     public Element getElementById(String id) {
-        if (rootElement == null) {
+        if (rootElement == null || id == null) {
             return null;
         }
-        return findElementById(rootElement, id);
+        if (rootElement instanceof ArenaNode) {
+            return findElementById(rootElement, id);
+        }
+        Object indexed = idIndex.get(id);
+        if (indexed instanceof Element element) {
+            return element;
+        }
+        if (indexed == null) {
+            return null;
+        }
+        // Duplicated id: the first one in document order wins
+        @SuppressWarnings("unchecked")
+        List<Element> elements = (List<Element>) indexed;
+        Element first = elements.get(0);
+        for (int i = 1; i < elements.size(); i++) {
+            if (precedes(elements.get(i), first)) {
+                first = elements.get(i);
+            }
+        }
+        return first;
     }
 
-    private Element findElementById(Node node, String id) {
-        if (node instanceof Element) {
-            Element element = (Element) node;
-            String elementId = element.getAttribute("id");
-            if (id.equals(elementId)) {
-                return element;
-            }
+    // Every element with this id, in document order
+    public List<Element> getElementsById(String id) {
+        if (rootElement == null || id == null) {
+            return Collections.emptyList();
+        }
+        if (rootElement instanceof ArenaNode) {
+            return Collections.unmodifiableList(collectElements(element -> id.equals(element.getAttribute("id"))));
+        }
+        Object indexed = idIndex.get(id);
+        if (indexed instanceof Element element) {
+            return List.of(element);
+        }
+        if (indexed == null) {
+            return Collections.emptyList();
         }
+        @SuppressWarnings("unchecked")
+        List<Element> elements = new ArrayList<>((List<Element>) indexed);
+        elements.sort((a, b) -> a == b ? 0 : precedes(a, b) ? -1 : 1);
+        return Collections.unmodifiableList(elements);
+    }
+
+    void indexId(Element element, CharSequence value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        String id = value.toString();
+        Object indexed = idIndex.get(id);
+        if (indexed == null) {
+            idIndex.put(id, element);
+        } else if (indexed instanceof Element other) {
+            List<Element> elements = new ArrayList<>(2);
+            elements.add(other);
+            elements.add(element);
+            idIndex.put(id, elements);
+        } else {
+            @SuppressWarnings("unchecked")
+            List<Element> elements = (List<Element>) indexed;
+            elements.add(element);
+        }
+    }
 
-        for (Node child : node.getChildren()) {
-            Element result = findElementById(child, id);
-            if (result != null) {
-                return result;
+    void unindexId(Element element, CharSequence value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        String id = value.toString();
+        Object indexed = idIndex.get(id);
+        if (indexed == element) {
+            idIndex.remove(id);
+        } else if (indexed instanceof List<?> elements) {
+            elements.remove(element);
+            if (elements.size() == 1) {
+                idIndex.put(id, elements.get(0));
             }
         }
+    }
 
+    // Whether a comes before b in document order
+    private static boolean precedes(Node a, Node b) {
+        List<Node> pathA = pathFromRoot(a);
+        List<Node> pathB = pathFromRoot(b);
+        int depth = 0;
+        while (depth < pathA.size() && depth < pathB.size() && pathA.get(depth) == pathB.get(depth)) {
+            depth++;
+        }
+        if (depth == pathA.size()) {
+            return true; // a is an ancestor of b
+        }
+        if (depth == pathB.size()) {
+            return false;
+        }
+        List<Node> siblings = pathA.get(depth - 1).getChildren();
+        return siblings.indexOf(pathA.get(depth)) < siblings.indexOf(pathB.get(depth));
+    }
+
+    private static List<Node> pathFromRoot(Node node) {
+        List<Node> path = new ArrayList<>();
+        for (Node current = node; current != null; current = current.getParent()) {
+            path.add(current);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private Element findElementById(Node root, String id) {
+        TreeWalker walker = new TreeWalker(root);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if (node instanceof Element element && id.equals(element.getAttribute("id"))) {
+                return element;
+            }
+        }
         return null;
     }
 
@@ -86,7 +317,11 @@ public class Document {
             sb.append("<!DOCTYPE ").append(doctype).append(">\n");
         }
         if (rootElement != null) {
-            sb.append(rootElement.toString());
+            try {
+                HtmlSerializer.writeTree(rootElement, sb);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // StringBuilder does not throw
+            }
         }
         return sb.toString();
     }
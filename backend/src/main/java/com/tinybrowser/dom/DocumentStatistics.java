@@ -0,0 +1,44 @@
+package com.tinybrowser.dom;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Element counts per tag name and per class, gathered in one walk the first time a
+ * document is queried. Query planning uses them to guess how many candidates each index
+ * would yield; they are not updated by later mutations, so they are estimates rather
+ * than facts.
+ */
+public final class DocumentStatistics {
+    private int elementCount;
+    private final int[] tagCounts = new int[Atoms.TAG_COUNT];
+    private final Map<String, Integer> otherTagCounts = new HashMap<>();
+    private final Map<String, Integer> classCounts = new HashMap<>();
+
+    public void addElement(Element element) {
+        elementCount++;
+        if (element.getTagId() != Atoms.UNKNOWN_TAG) {
+            tagCounts[element.getTagId()]++;
+        } else {
+            otherTagCounts.merge(element.getTagName(), 1, Integer::sum);
+        }
+        ClassList classes = element.getClassList();
+        for (int i = 0; i < classes.size(); i++) {
+            classCounts.merge(classes.get(i), 1, Integer::sum);
+        }
+    }
+
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    public int getTagCount(String tagName) {
+        String atom = Atoms.intern(tagName);
+        int tagId = Atoms.tagId(atom);
+        return tagId != Atoms.UNKNOWN_TAG ? tagCounts[tagId] : otherTagCounts.getOrDefault(atom, 0);
+    }
+
+    public int getClassCount(String className) {
+        return classCounts.getOrDefault(className, 0);
+    }
+}
@@ -0,0 +1,329 @@
+package com.tinybrowser.dom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact storage for a whole tree. Nodes are indices into parallel int arrays (parent,
+ * first and last child, next sibling, name, data range); tag and attribute names go into
+ * a small name pool and all text and attribute values into one shared char pool. A node
+ * costs 28 bytes plus its characters, instead of an object, a child list and an attribute
+ * map. Once class lists are asked for, each node also holds a reference to its parsed
+ * ClassList (4 bytes with compressed references), plus the list itself.
+ *
+ * Code sees the tree through Element and TextNode facades created on demand, so existing
+ * DOM code works unchanged. Facades are equal when they stand for the same node. Mutations
+ * go to the arrays; replaced text and values are left behind in the char pool.
+ */
+public final class DomArena {
+    private static final int NONE = -1;
+    private static final int TEXT = -1; // name slot of a text node
+
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] name;
+    // Text nodes: a range of the char pool. Elements: a range of the attribute arrays.
+    private int[] dataStart;
+    private int[] dataLength;
+    private int size;
+
+    private String[] names = new String[64];
+    private final Map<String, Integer> nameIndex = new HashMap<>();
+    private int nameCount;
+
+    private char[] chars = new char[4096];
+    private int charCount;
+
+    private int[] attrName = new int[64];
+    private int[] attrValueStart = new int[64];
+    private int[] attrValueLength = new int[64];
+    private int attrCount;
+
+    // Parsed class attributes by node, filled by classListOf; null until first asked for,
+    // so a tree never matched against selectors pays nothing for it
+    private ClassList[] classLists;
+
+    public DomArena() {
+        this(256);
+    }
+
+    public DomArena(int expectedNodes) {
+        int capacity = Math.max(16, expectedNodes);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        name = new int[capacity];
+        dataStart = new int[capacity];
+        dataLength = new int[capacity];
+    }
+
+    // New unattached element; append it somewhere to make it part of the tree
+    public Element createElement(String tagName) {
+        if (tagName == null || tagName.isBlank()) {
+            throw new IllegalArgumentException("Tag name cannot be null or blank");
+        }
+        int node = allocate(intern(Atoms.intern(tagName)));
+        dataStart[node] = attrCount;
+        return element(node);
+    }
+
+    public TextNode createTextNode(CharSequence text) {
+        int node = allocate(TEXT);
+        setText(node, text != null ? text : "");
+        return new ArenaTextNode(this, node);
+    }
+
+    // Number of nodes ever created in this arena
+    public int size() {
+        return size;
+    }
+
+    Node node(int node) {
+        return name[node] == TEXT ? new ArenaTextNode(this, node) : element(node);
+    }
+
+    private Element element(int node) {
+        String tagName = names[name[node]];
+        return new ArenaElement(this, node, tagName, Atoms.tagId(tagName));
+    }
+
+    Node parentOf(int node) {
+        return parent[node] == NONE ? null : node(parent[node]);
+    }
+
+    boolean hasChildren(int node) {
+        return firstChild[node] != NONE;
+    }
+
+    List<Node> childrenOf(int node) {
+        if (firstChild[node] == NONE) {
+            return Collections.emptyList();
+        }
+        List<Node> children = new ArrayList<>();
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            children.add(node(child));
+        }
+        return Collections.unmodifiableList(children);
+    }
+
+    // Sibling lists have no index, so this counts from the first child; walks step with
+    // nextSiblingOf instead, which keeps reads free of shared state
+    int childAt(int node, int i) {
+        int child = firstChild[node];
+        for (int from = 0; from < i && child != NONE; from++) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    int nextSiblingOf(int node) {
+        return nextSibling[node];
+    }
+
+    void appendChild(int node, int child) {
+        for (int ancestor = node; ancestor != NONE; ancestor = parent[ancestor]) {
+            if (ancestor == child) {
+                throw new IllegalArgumentException("A node cannot be appended to its own subtree");
+            }
+        }
+        if (parent[child] != NONE) {
+            removeChild(parent[child], child);
+        }
+        if (lastChild[node] == NONE) {
+            firstChild[node] = child;
+        } else {
+            nextSibling[lastChild[node]] = child;
+        }
+        lastChild[node] = child;
+        parent[child] = node;
+    }
+
+    void removeChild(int node, int child) {
+        if (parent[child] != node) {
+            return;
+        }
+        int previous = NONE;
+        for (int current = firstChild[node]; current != child; current = nextSibling[current]) {
+            previous = current;
+        }
+        if (previous == NONE) {
+            firstChild[node] = nextSibling[child];
+        } else {
+            nextSibling[previous] = nextSibling[child];
+        }
+        if (lastChild[node] == child) {
+            lastChild[node] = previous;
+        }
+        parent[child] = NONE;
+        nextSibling[child] = NONE;
+    }
+
+    void removeAllChildren(int node) {
+        int child = firstChild[node];
+        while (child != NONE) {
+            int next = nextSibling[child];
+            parent[child] = NONE;
+            nextSibling[child] = NONE;
+            child = next;
+        }
+        firstChild[node] = lastChild[node] = NONE;
+    }
+
+    String text(int node) {
+        return new String(chars, dataStart[node], dataLength[node]);
+    }
+
+    void setText(int node, CharSequence text) {
+        dataStart[node] = store(text);
+        dataLength[node] = text.length();
+    }
+
+    // Index into the attribute arrays of the named attribute, or NONE. Compares the arena's
+    // own name slots, which are keyed by equals, so non-canonical atoms still match.
+    int findAttribute(int node, String atom) {
+        Integer index = nameIndex.get(atom);
+        if (index == null) {
+            return NONE;
+        }
+        int slot = index;
+        int end = dataStart[node] + dataLength[node];
+        for (int i = dataStart[node]; i < end; i++) {
+            if (attrName[i] == slot) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    String attributeValue(int attr) {
+        return new String(chars, attrValueStart[attr], attrValueLength[attr]);
+    }
+
+    void setAttribute(int node, String atom, CharSequence value) {
+        int attr = findAttribute(node, atom);
+        if (attr == NONE) {
+            attr = addAttributeSlot(node);
+            attrName[attr] = intern(atom);
+        }
+        attrValueStart[attr] = store(value);
+        attrValueLength[attr] = value.length();
+        if (classLists != null && node < classLists.length && "class".equals(atom)) {
+            classLists[node] = null;
+        }
+    }
+
+    // Facades are short-lived, so the parsed list is kept here rather than on them
+    ClassList classListOf(int node) {
+        if (classLists == null || classLists.length <= node) {
+            classLists = classLists == null
+                ? new ClassList[parent.length]
+                : Arrays.copyOf(classLists, parent.length);
+        }
+        ClassList classes = classLists[node];
+        if (classes == null) {
+            int attr = findAttribute(node, "class");
+            classes = attr < 0 ? ClassList.EMPTY : ClassList.parse(attributeValue(attr));
+            classLists[node] = classes;
+        }
+        return classes;
+    }
+
+    int attributeCount(int node) {
+        return dataLength[node];
+    }
+
+    // Index into the attribute arrays of a node's i-th attribute
+    int attributeAt(int node, int i) {
+        if (i < 0 || i >= dataLength[node]) {
+            throw new IndexOutOfBoundsException("Attribute " + i + " of " + dataLength[node]);
+        }
+        return dataStart[node] + i;
+    }
+
+    String attributeName(int node, int i) {
+        return names[attrName[attributeAt(node, i)]];
+    }
+
+    // Attributes of a node are contiguous; a node whose block is not at the end is moved
+    // there before it can grow
+    private int addAttributeSlot(int node) {
+        int start = dataStart[node];
+        int length = dataLength[node];
+        if (start + length != attrCount) {
+            ensureAttributeCapacity(attrCount + length + 1);
+            System.arraycopy(attrName, start, attrName, attrCount, length);
+            System.arraycopy(attrValueStart, start, attrValueStart, attrCount, length);
+            System.arraycopy(attrValueLength, start, attrValueLength, attrCount, length);
+            dataStart[node] = attrCount;
+            attrCount += length;
+        } else {
+            ensureAttributeCapacity(attrCount + 1);
+        }
+        dataLength[node]++;
+        return attrCount++;
+    }
+
+    private int allocate(int nameSlot) {
+        if (size == parent.length) {
+            int capacity = size + (size >> 1);
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            name = Arrays.copyOf(name, capacity);
+            dataStart = Arrays.copyOf(dataStart, capacity);
+            dataLength = Arrays.copyOf(dataLength, capacity);
+        }
+        int node = size++;
+        parent[node] = firstChild[node] = lastChild[node] = nextSibling[node] = NONE;
+        name[node] = nameSlot;
+        dataStart[node] = dataLength[node] = 0;
+        return node;
+    }
+
+    private int intern(String atom) {
+        Integer index = nameIndex.get(atom);
+        if (index != null) {
+            return index;
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, nameCount * 2);
+        }
+        names[nameCount] = atom;
+        nameIndex.put(atom, nameCount);
+        return nameCount++;
+    }
+
+    private int store(CharSequence text) {
+        int length = text.length();
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        int start = charCount;
+        if (text instanceof String string) {
+            string.getChars(0, length, chars, start);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[start + i] = text.charAt(i);
+            }
+        }
+        charCount += length;
+        return start;
+    }
+
+    private void ensureAttributeCapacity(int capacity) {
+        if (capacity > attrName.length) {
+            int grown = Math.max(attrName.length * 2, capacity);
+            attrName = Arrays.copyOf(attrName, grown);
+            attrValueStart = Arrays.copyOf(attrValueStart, grown);
+            attrValueLength = Arrays.copyOf(attrValueLength, grown);
+        }
+    }
+}
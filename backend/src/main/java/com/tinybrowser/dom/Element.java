@@ -1,48 +1,211 @@
 package com.tinybrowser.dom;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.tinybrowser.css.SelectorQuery;
+
 public class Element extends Node {
+    private static final String ID = Atoms.intern("id");
+    private static final String CLASS = Atoms.intern("class");
+
     private final String tagName;
-    private final Map<String, String> attributes;
+    private final int tagId;
+    // Values are Strings or spans into the parsed source; spans are materialized on first read
+    private final AttributeList attributes;
+    private Map<String, String> attributeMap;
+    private AttributeLoader deferredAttributes;
+    private ClassList classList;
+    // Between the end of the start tag and the start of the element's own end tag; the end
+    // stays -1 when the element was closed implicitly
+    private int contentStart = -1;
+    private int contentEnd = -1;
 
     public Element(String tagName) {
         super();
         if (tagName == null || tagName.isBlank()) {
             throw new IllegalArgumentException("Tag name cannot be null or blank");
         }
-        this.tagName = tagName.toLowerCase();
-        this.attributes = new HashMap<>();
+        this.tagName = Atoms.intern(tagName);
+        this.tagId = Atoms.tagId(this.tagName);
+        this.attributes = new AttributeList();
+    }
+
+    // For facades that keep their attributes elsewhere; tagName must already be an atom
+    Element(String tagName, int tagId) {
+        super();
+        this.tagName = tagName;
+        this.tagId = tagId;
+        this.attributes = new AttributeList();
     }
 
     public String getTagName() {
         return tagName;
     }
 
+    // Pre-assigned id from Atoms, or Atoms.UNKNOWN_TAG
+    public int getTagId() {
+        return tagId;
+    }
+
+    public int getContentStart() {
+        return contentStart;
+    }
+
+    public int getContentEnd() {
+        return contentEnd;
+    }
+
+    public void setContentRange(int start, int end) {
+        this.contentStart = start;
+        this.contentEnd = end;
+    }
+
+    // Attributes the parser skipped in lazy mode; they are merged in on first access and
+    // never replace a value already set on the element
+    public void setDeferredAttributes(AttributeLoader loader) {
+        this.deferredAttributes = loader;
+    }
+
     public String getAttribute(String name) {
         if (name == null) {
             throw new IllegalArgumentException("Attribute name cannot be null");
         }
-        return attributes.get(name.toLowerCase());
+        String atom = Atoms.intern(name);
+        loadDeferredAttributes(atom);
+        return materialize(atom);
+    }
+
+    // Returns the value without materializing a span
+    public CharSequence getAttributeCharacters(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Attribute name cannot be null");
+        }
+        String atom = Atoms.intern(name);
+        loadDeferredAttributes(atom);
+        return attributes.get(atom);
     }
 
-    public void setAttribute(String name, String value) {
+    public void setAttribute(String name, CharSequence value) {
         if (name == null || name.isBlank()) {
             throw new IllegalArgumentException("Attribute name cannot be null or blank");
         }
-        attributes.put(name.toLowerCase(), value != null ? value : "");
+        String atom = Atoms.intern(name);
+        CharSequence stored = value != null ? value : "";
+        Document document = getOwnerDocument();
+        if (atom == ID && document != null) {
+            document.unindexId(this, attributes.get(ID));
+            document.indexId(this, stored);
+        }
+        attributes.put(atom, stored);
+        if (atom == CLASS) {
+            classList = null;
+            if (document != null) {
+                document.mutated();
+            }
+        }
+        markDirty(SELF_DIRTY);
+        if (document != null) {
+            document.record(MutationRecord.attributeChanged(this, atom));
+        }
+    }
+
+    // Classes of the class attribute, parsed on first use and again after it changes
+    public ClassList getClassList() {
+        ClassList classes = classList;
+        if (classes == null) {
+            classes = ClassList.parse(getAttributeCharacters(CLASS));
+            classList = classes;
+        }
+        return classes;
+    }
+
+    public boolean hasClass(String className) {
+        return className != null && getClassList().contains(className);
+    }
+
+    // First descendant in document order matching the selector list, or null
+    public Element querySelector(String selectors) {
+        return SelectorQuery.compile(selectors).first(this);
+    }
+
+    public List<Element> querySelectorAll(String selectors) {
+        return SelectorQuery.compile(selectors).all(this);
+    }
+
+    // Raw id value for the document index; the parser never defers it
+    CharSequence idValue() {
+        return attributes.get(ID);
     }
 
     public boolean hasAttribute(String name) {
         if (name == null) {
             throw new IllegalArgumentException("Attribute name cannot be null");
         }
-        return attributes.containsKey(name.toLowerCase());
+        String atom = Atoms.intern(name);
+        loadDeferredAttributes(atom);
+        return attributes.indexOf(atom) >= 0;
+    }
+
+    // Indexed access in the order attributes were set, for walking them without
+    // allocating: for (int i = 0; i < getAttributeCount(); i++) ...
+    public int getAttributeCount() {
+        loadDeferredAttributes(null);
+        return attributes.size();
+    }
+
+    public String getAttributeName(int index) {
+        return attributes.name(index);
     }
 
+    public String getAttributeValue(int index) {
+        CharSequence value = attributes.value(index);
+        if (value instanceof String string) {
+            return string;
+        }
+        String materialized = value.toString();
+        attributes.setValue(index, materialized);
+        return materialized;
+    }
+
+    // Read-only view; prefer the indexed accessors on hot paths
     public Map<String, String> getAttributes() {
-        return Collections.unmodifiableMap(attributes);
+        if (attributeMap == null) {
+            attributeMap = new AttributeMap(this);
+        }
+        return attributeMap;
+    }
+
+    // Values already on the element win, and the parser always sets id and class eagerly,
+    // so a lookup that hits the map or asks for those two is answered without loading
+    private void loadDeferredAttributes(String name) {
+        if (deferredAttributes == null) {
+            return;
+        }
+        if (name != null && (attributes.indexOf(name) >= 0 || name == ID || name == CLASS)) {
+            return;
+        }
+        AttributeLoader loader = deferredAttributes;
+        deferredAttributes = null;
+
+        // Later duplicates win among the deferred attributes, as they do when parsed eagerly,
+        // and the result is in source order with attributes set since then at the end
+        Map<String, CharSequence> loaded = new LinkedHashMap<>();
+        loader.load(loaded::put);
+        AttributeList current = attributes.copy();
+        attributes.clear();
+        loaded.forEach((atom, value) -> {
+            CharSequence set = current.get(atom);
+            attributes.put(atom, set != null ? set : value);
+        });
+        for (int i = 0; i < current.size(); i++) {
+            attributes.putIfAbsent(current.name(i), current.value(i));
+        }
+    }
+
+    private String materialize(String name) {
+        int index = attributes.indexOf(name);
+        return index >= 0 ? getAttributeValue(index) : null;
     }
 }
@@ -0,0 +1,38 @@
+package com.tinybrowser.dom;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Live, read-only list of the elements of a document that pass a filter, in document
+// order. The elements are collected on first use and again only after the document's
+// mutation generation has moved on.
+final class ElementCollection extends AbstractList<Element> {
+    private final Document document;
+    private final Predicate<Element> filter;
+    private List<Element> elements;
+    private int generation;
+
+    ElementCollection(Document document, Predicate<Element> filter) {
+        this.document = document;
+        this.filter = filter;
+    }
+
+    @Override
+    public Element get(int index) {
+        return elements().get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements().size();
+    }
+
+    private List<Element> elements() {
+        if (elements == null || generation != document.getGeneration()) {
+            elements = document.collectElements(filter);
+            generation = document.getGeneration();
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,196 @@
+package com.tinybrowser.dom;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a tree to an Appendable in one pass, as HTML or in the indented debug format of
+ * Node.toTreeString. Nothing is built per node: text goes out in runs between the
+ * characters that need escaping. The Path and OutputStream variants wrap the target in a
+ * buffered UTF-8 writer, for saving a document or streaming it as a response body.
+ */
+public final class HtmlSerializer {
+    private static final String SCRIPT = Atoms.intern("script");
+    private static final String STYLE = Atoms.intern("style");
+    private static final String XMP = Atoms.intern("xmp");
+    private static final String IFRAME = Atoms.intern("iframe");
+    private static final String NOEMBED = Atoms.intern("noembed");
+    private static final String NOFRAMES = Atoms.intern("noframes");
+    private static final String PLAINTEXT = Atoms.intern("plaintext");
+
+    private static final String[] VOID_ELEMENTS = {
+        "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param",
+        "source", "track", "wbr"
+    };
+    private static final boolean[] VOID_TAG_IDS = new boolean[Atoms.TAG_COUNT];
+
+    static {
+        for (String name : VOID_ELEMENTS) {
+            VOID_TAG_IDS[Atoms.tagId(name)] = true;
+        }
+    }
+
+    private HtmlSerializer() {
+    }
+
+    public static String toHtml(Node node) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeHtml(node, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    public static void writeHtml(Document document, Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeHtml(document, writer);
+        }
+    }
+
+    // Flushes but does not close the stream, which belongs to the caller
+    public static void writeHtml(Document document, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeHtml(document, writer);
+        writer.flush();
+    }
+
+    public static void writeHtml(Document document, Appendable out) throws IOException {
+        String doctype = document.getDoctype();
+        if (doctype != null && !doctype.isEmpty()) {
+            // The parser keeps the token text, which starts with "!DOCTYPE"
+            String name = doctype.regionMatches(true, 0, "!DOCTYPE", 0, 8) ? doctype.substring(8).trim() : doctype;
+            out.append("<!DOCTYPE ").append(name).append(">");
+        }
+        if (document.getRootElement() != null) {
+            writeHtml(document.getRootElement(), out);
+        }
+    }
+
+    public static void writeHtml(Node root, Appendable out) throws IOException {
+        TreeWalker walker = new TreeWalker(root);
+        int event;
+        while ((event = walker.next()) != TreeWalker.END) {
+            Node node = walker.node();
+            if (node instanceof Element element) {
+                if (event == TreeWalker.ENTER) {
+                    out.append('<').append(element.getTagName());
+                    for (int i = 0; i < element.getAttributeCount(); i++) {
+                        out.append(' ').append(element.getAttributeName(i)).append("=\"");
+                        escape(element.getAttributeValue(i), true, out);
+                        out.append('"');
+                    }
+                    out.append('>');
+                } else if (!isVoid(element)) {
+                    out.append("</").append(element.getTagName()).append('>');
+                }
+            } else if (node instanceof TextNode text && event == TreeWalker.ENTER) {
+                if (isRawText(node.getParent())) {
+                    out.append(text.getCharacters());
+                } else {
+                    escape(text.getCharacters(), false, out);
+                }
+            }
+        }
+    }
+
+    // The Node.toTreeString format: one line per element or non-blank text, indented two
+    // spaces per level, with values as they are
+    public static void writeTree(Node root, Appendable out) throws IOException {
+        TreeWalker walker = new TreeWalker(root);
+        int event;
+        while ((event = walker.next()) != TreeWalker.END) {
+            Node node = walker.node();
+            if (node instanceof Element element) {
+                if (event == TreeWalker.ENTER) {
+                    indent(walker.depth(), out);
+                    out.append('<').append(element.getTagName());
+                    for (int i = 0; i < element.getAttributeCount(); i++) {
+                        out.append(' ').append(element.getAttributeName(i))
+                           .append("=\"").append(element.getAttributeValue(i)).append('"');
+                    }
+                    out.append(node.hasChildren() ? ">\n" : " />\n");
+                } else if (node.hasChildren()) {
+                    indent(walker.depth(), out);
+                    out.append("</").append(element.getTagName()).append(">\n");
+                }
+            } else if (node instanceof TextNode text && event == TreeWalker.ENTER) {
+                CharSequence characters = text.getCharacters();
+                // Trimmed like String.trim
+                int start = 0;
+                int end = characters.length();
+                while (start < end && characters.charAt(start) <= ' ') {
+                    start++;
+                }
+                while (end > start && characters.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                if (start < end) {
+                    indent(walker.depth(), out);
+                    out.append("TEXT: \"").append(characters, start, end).append("\"\n");
+                }
+            }
+        }
+    }
+
+    private static void indent(int depth, Appendable out) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            out.append("  ");
+        }
+    }
+
+    private static void escape(CharSequence text, boolean inAttribute, Appendable out) throws IOException {
+        int run = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            String replacement;
+            switch (text.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '\u00A0':
+                    replacement = "&nbsp;";
+                    break;
+                case '"':
+                    replacement = inAttribute ? "&quot;" : null;
+                    break;
+                case '<':
+                    replacement = inAttribute ? null : "&lt;";
+                    break;
+                case '>':
+                    replacement = inAttribute ? null : "&gt;";
+                    break;
+                default:
+                    replacement = null;
+                    break;
+            }
+            if (replacement != null) {
+                out.append(text, run, i).append(replacement);
+                run = i + 1;
+            }
+        }
+        out.append(text, run, length);
+    }
+
+    private static boolean isVoid(Element element) {
+        return VOID_TAG_IDS[element.getTagId()];
+    }
+
+    // Text in these elements is not parsed for references, so it is written as is
+    private static boolean isRawText(Node parent) {
+        if (!(parent instanceof Element element)) {
+            return false;
+        }
+        String name = element.getTagName();
+        return name == SCRIPT || name == STYLE || name == XMP || name == IFRAME
+            || name == NOEMBED || name == NOFRAMES || name == PLAINTEXT;
+    }
+}
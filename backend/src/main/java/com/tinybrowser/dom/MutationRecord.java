@@ -0,0 +1,77 @@
+package com.tinybrowser.dom;
+
+// One change to a document's tree, as queued by Document while it records mutations.
+// CHILD_LIST records have exactly one of the added and removed nodes set, ATTRIBUTES
+// records the attribute name, and CHARACTER_DATA records only the text node.
+public final class MutationRecord {
+    public static final int CHILD_LIST = 1;
+    public static final int ATTRIBUTES = 2;
+    public static final int CHARACTER_DATA = 3;
+
+    private final int type;
+    private final Node target;
+    private final Node addedNode;
+    private final Node removedNode;
+    private final String attributeName;
+
+    private MutationRecord(int type, Node target, Node addedNode, Node removedNode, String attributeName) {
+        this.type = type;
+        this.target = target;
+        this.addedNode = addedNode;
+        this.removedNode = removedNode;
+        this.attributeName = attributeName;
+    }
+
+    static MutationRecord childAdded(Node parent, Node child) {
+        return new MutationRecord(CHILD_LIST, parent, child, null, null);
+    }
+
+    static MutationRecord childRemoved(Node parent, Node child) {
+        return new MutationRecord(CHILD_LIST, parent, null, child, null);
+    }
+
+    static MutationRecord attributeChanged(Element element, String name) {
+        return new MutationRecord(ATTRIBUTES, element, null, null, name);
+    }
+
+    static MutationRecord textChanged(TextNode node) {
+        return new MutationRecord(CHARACTER_DATA, node, null, null, null);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public Node getTarget() {
+        return target;
+    }
+
+    public Node getAddedNode() {
+        return addedNode;
+    }
+
+    public Node getRemovedNode() {
+        return removedNode;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case CHILD_LIST:
+                return addedNode != null ? "childList +" + describe(addedNode) + " in " + describe(target)
+                                         : "childList -" + describe(removedNode) + " from " + describe(target);
+            case ATTRIBUTES:
+                return "attributes " + attributeName + " on " + describe(target);
+            default:
+                return "characterData on " + describe(target);
+        }
+    }
+
+    private static String describe(Node node) {
+        return node instanceof Element element ? element.getTagName() : "#text";
+    }
+}
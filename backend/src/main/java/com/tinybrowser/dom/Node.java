@@ -1,15 +1,33 @@
 package com.tinybrowser.dom;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public abstract class Node {
-    private final List<Node> children;
+    // Dirty flags, set by mutations and cleared by whoever consumes them (StyleEngine.restyle).
+    // SELF_DIRTY: the node itself changed or was inserted. CHILDREN_DIRTY: its child list
+    // changed. DESCENDANT_DIRTY: something below it has a flag set. A node with
+    // DESCENDANT_DIRTY always has ancestors with it too, which lets marking stop early.
+    public static final int SELF_DIRTY = 1;
+    public static final int CHILDREN_DIRTY = 2;
+    public static final int DESCENDANT_DIRTY = 4;
+    private static final int ALL_DIRTY = SELF_DIRTY | CHILDREN_DIRTY | DESCENDANT_DIRTY;
+
+    // Allocated on the first appendChild; most nodes are leaves
+    private List<Node> children;
     private Node parent;
+    // Set on every node of a tree that is attached to a Document, so its id index can follow
+    // mutations without walking up to the root
+    private Document ownerDocument;
+    // Offsets of the node's markup in the parsed source, or -1 when not parsed from one
+    private int sourceStart = -1;
+    private int sourceEnd = -1;
+    private int dirtyFlags;
 
     public Node() {
-        this.children = new ArrayList<>();
         this.parent = null;
     }
 
@@ -17,24 +35,95 @@ public abstract class Node {
         if (child == null) {
             throw new IllegalArgumentException("Child node cannot be null");
         }
+        if (child instanceof ArenaNode) {
+            throw new IllegalArgumentException("Arena nodes can only be appended within their arena");
+        }
         if (child.parent != null) {
             child.parent.removeChild(child);
         }
+        if (children == null) {
+            children = new ArrayList<>();
+        }
         children.add(child);
         child.parent = this;
+        if (child.ownerDocument != ownerDocument) {
+            child.setOwnerDocument(ownerDocument);
+        }
+        child.markDirty(SELF_DIRTY);
+        markDirty(CHILDREN_DIRTY);
+        if (ownerDocument != null) {
+            ownerDocument.mutated();
+            ownerDocument.record(MutationRecord.childAdded(this, child));
+        }
     }
 
     public void removeChild(Node child) {
         if (child == null) {
             throw new IllegalArgumentException("Child node cannot be null");
         }
-        if (children.remove(child)) {
+        if (children != null && children.remove(child)) {
             child.parent = null;
+            markDirty(CHILDREN_DIRTY);
+            Document document = child.ownerDocument;
+            if (document != null) {
+                child.setOwnerDocument(null);
+                document.mutated();
+                document.record(MutationRecord.childRemoved(this, child));
+            }
+        }
+    }
+
+    public void removeAllChildren() {
+        if (children != null) {
+            for (Node child : children) {
+                child.parent = null;
+                if (child.ownerDocument != null) {
+                    child.setOwnerDocument(null);
+                    ownerDocument.record(MutationRecord.childRemoved(this, child));
+                }
+            }
+            children.clear();
+            markDirty(CHILDREN_DIRTY);
+            if (ownerDocument != null) {
+                ownerDocument.mutated();
+            }
         }
     }
 
     public List<Node> getChildren() {
-        return Collections.unmodifiableList(children);
+        return children == null ? Collections.emptyList() : Collections.unmodifiableList(children);
+    }
+
+    public Document getOwnerDocument() {
+        return ownerDocument;
+    }
+
+    // Moves the whole subtree to another document's id index, or out of any with null
+    void setOwnerDocument(Document document) {
+        TreeWalker walker = new TreeWalker(this);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if (node instanceof Element element) {
+                if (node.ownerDocument != null) {
+                    node.ownerDocument.unindexId(element, element.idValue());
+                }
+                if (document != null) {
+                    document.indexId(element, element.idValue());
+                }
+            }
+            node.ownerDocument = document;
+        }
+    }
+
+    // The child at index, or null past the end; lets TreeWalker step without allocating
+    Node childAt(int index) {
+        return children != null && index < children.size() ? children.get(index) : null;
+    }
+
+    // The sibling after this node, which is child index of parent. Arena facades follow
+    // their sibling link instead, since counting to an index there is linear.
+    Node siblingAfter(Node parent, int index) {
+        return parent.childAt(index + 1);
     }
 
     public Node getParent() {
@@ -42,60 +131,85 @@ public abstract class Node {
     }
 
     public boolean hasChildren() {
-        return !children.isEmpty();
+        return children != null && !children.isEmpty();
     }
 
-    public String getTextContent() {
-        StringBuilder sb = new StringBuilder();
-        collectTextContent(this, sb);
-        return sb.toString();
+    // Arena facades are short-lived and keep no flags, so they always report dirty
+    public int getDirtyFlags() {
+        return this instanceof ArenaNode ? ALL_DIRTY : dirtyFlags;
     }
 
-    private void collectTextContent(Node node, StringBuilder sb) {
-        if (node instanceof TextNode) {
-            sb.append(((TextNode) node).getText());
-        }
+    public boolean isSelfDirty() {
+        return (getDirtyFlags() & SELF_DIRTY) != 0;
+    }
 
-        for (Node child : node.getChildren()) {
-            collectTextContent(child, sb);
-        }
+    public boolean isChildrenDirty() {
+        return (getDirtyFlags() & CHILDREN_DIRTY) != 0;
     }
 
-    public String toTreeString() {
-        return toTreeString(0);
+    public boolean hasDirtyDescendant() {
+        return (getDirtyFlags() & DESCENDANT_DIRTY) != 0;
     }
 
-    private String toTreeString(int indent) {
-        StringBuilder sb = new StringBuilder();
-        String indentation = "  ".repeat(indent);
+    // Sets flags on this node and DESCENDANT_DIRTY up the ancestor chain, stopping at the
+    // first ancestor that already has it, so repeated changes in one subtree are O(1)
+    void markDirty(int flags) {
+        dirtyFlags |= flags;
+        for (Node ancestor = parent; ancestor != null && (ancestor.dirtyFlags & DESCENDANT_DIRTY) == 0;
+             ancestor = ancestor.parent) {
+            ancestor.dirtyFlags |= DESCENDANT_DIRTY;
+        }
+    }
 
-        if (this instanceof Element) {
-            Element element = (Element) this;
-            sb.append(indentation).append("<").append(element.getTagName());
+    // Clears SELF_DIRTY and CHILDREN_DIRTY on this node only
+    public void clearDirty() {
+        dirtyFlags &= DESCENDANT_DIRTY;
+    }
 
-            if (!element.getAttributes().isEmpty()) {
-                for (var entry : element.getAttributes().entrySet()) {
-                    sb.append(" ").append(entry.getKey()).append("=\"").append(entry.getValue()).append("\"");
-                }
+    // Clears every flag in the subtree, visiting only the parts that have any
+    public void clearSubtreeDirty() {
+        TreeWalker walker = new TreeWalker(this);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if ((node.dirtyFlags & DESCENDANT_DIRTY) == 0) {
+                walker.skipChildren();
             }
+            node.dirtyFlags = 0;
+        }
+    }
 
-            if (hasChildren()) {
-                sb.append(">\n");
-                for (Node child : getChildren()) {
-                    sb.append(child.toTreeString(indent + 1));
-                }
-                sb.append(indentation).append("</").append(element.getTagName()).append(">\n");
-            } else {
-                sb.append(" />\n");
-            }
-        } else if (this instanceof TextNode) {
-            TextNode textNode = (TextNode) this;
-            String text = textNode.getText().trim();
-            if (!text.isEmpty()) {
-                sb.append(indentation).append("TEXT: \"").append(text).append("\"\n");
+    public int getSourceStart() {
+        return sourceStart;
+    }
+
+    public int getSourceEnd() {
+        return sourceEnd;
+    }
+
+    public void setSourceRange(int start, int end) {
+        this.sourceStart = start;
+        this.sourceEnd = end;
+    }
+
+    public String getTextContent() {
+        StringBuilder sb = new StringBuilder();
+        TreeWalker walker = new TreeWalker(this);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if (node instanceof TextNode textNode) {
+                sb.append(textNode.getCharacters());
             }
         }
+        return sb.toString();
+    }
 
+    public String toTreeString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            HtmlSerializer.writeTree(this, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
         return sb.toString();
     }
 
@@ -0,0 +1,14 @@
+package com.tinybrowser.dom;
+
+// Decides which nodes a NodeIterator returns. SKIP leaves the node out but still visits
+// its descendants; REJECT leaves out the node and its whole subtree.
+@FunctionalInterface
+public interface NodeFilter {
+    int ACCEPT = 1;
+    int SKIP = 2;
+    int REJECT = 3;
+
+    NodeFilter ALL = node -> ACCEPT;
+
+    int acceptNode(Node node);
+}
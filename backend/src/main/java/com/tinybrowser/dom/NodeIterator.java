@@ -0,0 +1,47 @@
+package com.tinybrowser.dom;
+
+// Pre-order iteration over the nodes of a subtree that a filter accepts, root included.
+// Built on TreeWalker, so it is iterative and allocation-free per step.
+public final class NodeIterator {
+    private final TreeWalker walker;
+    private final NodeFilter filter;
+
+    public NodeIterator(Node root) {
+        this(root, NodeFilter.ALL);
+    }
+
+    public NodeIterator(Node root, NodeFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        this.walker = new TreeWalker(root);
+        this.filter = filter;
+    }
+
+    // Next accepted node, or null when there are no more
+    public Node nextNode() {
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            switch (filter.acceptNode(node)) {
+                case NodeFilter.ACCEPT:
+                    return node;
+                case NodeFilter.REJECT:
+                    walker.skipChildren();
+                    break;
+                default:
+                    break;
+            }
+        }
+        return null;
+    }
+
+    // Leaves out the descendants of the node last returned
+    public void skipChildren() {
+        walker.skipChildren();
+    }
+
+    // Depth below the root of the node last returned
+    public int depth() {
+        return walker.depth();
+    }
+}
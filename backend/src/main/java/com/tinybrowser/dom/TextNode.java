@@ -1,18 +1,32 @@
 package com.tinybrowser.dom;
 
 public class TextNode extends Node {
-    private String text;
+    // Either a String or a span into the parsed source; spans are materialized on first getText()
+    private CharSequence text;
 
-    public TextNode(String text) {
+    public TextNode(CharSequence text) {
         super();
         this.text = text != null ? text : "";
     }
 
     public String getText() {
+        if (!(text instanceof String)) {
+            text = text.toString();
+        }
+        return (String) text;
+    }
+
+    // Returns the text without materializing a span
+    public CharSequence getCharacters() {
         return text;
     }
 
-    public void setText(String text) {
+    public void setText(CharSequence text) {
         this.text = text != null ? text : "";
+        markDirty(SELF_DIRTY);
+        Document document = getOwnerDocument();
+        if (document != null) {
+            document.record(MutationRecord.textChanged(this));
+        }
     }
 }
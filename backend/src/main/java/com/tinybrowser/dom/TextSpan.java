@@ -0,0 +1,56 @@
+package com.tinybrowser.dom;
+
+// Read-only view of a range of a larger source, used so text and attribute
+// values can point into the parsed input instead of copying it
+public final class TextSpan implements CharSequence {
+    private final CharSequence source;
+    private final int offset;
+    private final int length;
+
+    public TextSpan(CharSequence source, int offset, int length) {
+        if (source == null) {
+            throw new IllegalArgumentException("Source cannot be null");
+        }
+        if (offset < 0 || length < 0 || offset + length > source.length()) {
+            throw new IndexOutOfBoundsException("Span [" + offset + ", " + (offset + length)
+                + ") out of range for length " + source.length());
+        }
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + length);
+        }
+        return source.charAt(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of range for length " + length);
+        }
+        return new TextSpan(source, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(offset, offset + length).toString();
+    }
+}
@@ -0,0 +1,120 @@
+package com.tinybrowser.dom;
+
+import java.util.Arrays;
+
+/**
+ * Iterative depth-first traversal of a subtree. Each call to next() reports one event:
+ * ENTER when a node is reached, before its descendants, and EXIT once they are all done.
+ * Pre-order is the ENTER events and post-order the EXIT events; a serializer uses both.
+ *
+ * The walker keeps the path from the root as arrays of nodes and child indices, so depth
+ * is limited by memory rather than the call stack, and steps allocate nothing once the
+ * arrays have grown to the tree's depth. Changing the tree under a walker other than
+ * in the node just reported has undefined results.
+ */
+public final class TreeWalker {
+    public static final int END = 0;
+    public static final int ENTER = 1;
+    public static final int EXIT = 2;
+
+    private static final int START = -1;
+
+    private final Node root;
+    private Node[] path = new Node[32];
+    private int[] indices = new int[32];
+    private int size;
+    private int event = START;
+    private boolean skipChildren;
+
+    public TreeWalker(Node root) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root node cannot be null");
+        }
+        this.root = root;
+    }
+
+    public int next() {
+        switch (event) {
+            case START:
+                path[0] = root;
+                size = 1;
+                return event = ENTER;
+            case ENTER:
+                if (!skipChildren) {
+                    Node child = path[size - 1].childAt(0);
+                    if (child != null) {
+                        push(child, 0);
+                        return event = ENTER;
+                    }
+                }
+                skipChildren = false;
+                return event = EXIT;
+            case EXIT:
+                if (size == 1) {
+                    path[--size] = null;
+                    return event = END;
+                }
+                int index = indices[size - 1];
+                Node sibling = path[size - 1].siblingAfter(path[size - 2], index);
+                if (sibling != null) {
+                    path[size - 1] = sibling;
+                    indices[size - 1] = index + 1;
+                    return event = ENTER;
+                }
+                path[--size] = null;
+                return event = EXIT;
+            default:
+                return END;
+        }
+    }
+
+    // Next node in pre-order, or null when the walk is over
+    public Node nextPreOrder() {
+        int next;
+        while ((next = next()) != END) {
+            if (next == ENTER) {
+                return node();
+            }
+        }
+        return null;
+    }
+
+    // Next node in post-order, or null when the walk is over
+    public Node nextPostOrder() {
+        int next;
+        while ((next = next()) != END) {
+            if (next == EXIT) {
+                return node();
+            }
+        }
+        return null;
+    }
+
+    // Node of the current event
+    public Node node() {
+        return size == 0 ? null : path[size - 1];
+    }
+
+    // Depth of the current node below the root, which is at 0
+    public int depth() {
+        return size - 1;
+    }
+
+    // After ENTER: go straight to the node's EXIT without visiting its descendants
+    public void skipChildren() {
+        if (event != ENTER) {
+            throw new IllegalStateException("skipChildren is only valid after ENTER");
+        }
+        skipChildren = true;
+    }
+
+    private void push(Node node, int index) {
+        if (size == path.length) {
+            path = Arrays.copyOf(path, size * 2);
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        path[size] = node;
+        indices[size] = index;
+        size++;
+    }
+}
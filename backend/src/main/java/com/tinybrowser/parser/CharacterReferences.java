@@ -0,0 +1,227 @@
+package com.tinybrowser.parser;
+
+import java.util.Arrays;
+
+/**
+ * Decodes character references: the HTML 4 named set plus &apos;, and decimal or hex
+ * numeric references. Names live in a static trie packed into parallel arrays, walked one
+ * character at a time for the longest match. As in browsers, the Latin-1 names are also
+ * recognized without the trailing ';'.
+ */
+final class CharacterReferences {
+    private static final String LATIN1 = "nbsp iexcl cent pound curren yen brvbar sect uml copy ordf laquo not shy"
+        + " reg macr deg plusmn sup2 sup3 acute micro para middot cedil sup1 ordm raquo frac14 frac12 frac34"
+        + " iquest Agrave Aacute Acirc Atilde Auml Aring AElig Ccedil Egrave Eacute Ecirc Euml Igrave Iacute"
+        + " Icirc Iuml ETH Ntilde Ograve Oacute Ocirc Otilde Ouml times Oslash Ugrave Uacute Ucirc Uuml"
+        + " Yacute THORN szlig agrave aacute acirc atilde auml aring aelig ccedil egrave eacute ecirc euml"
+        + " igrave iacute icirc iuml eth ntilde ograve oacute ocirc otilde ouml divide oslash ugrave uacute"
+        + " ucirc uuml yacute thorn yuml";
+
+    private static final String GREEK_UPPER = "Alpha Beta Gamma Delta Epsilon Zeta Eta Theta Iota Kappa"
+        + " Lambda Mu Nu Xi Omicron Pi Rho";
+    private static final String GREEK_UPPER_2 = "Sigma Tau Upsilon Phi Chi Psi Omega";
+    private static final String GREEK_LOWER = "alpha beta gamma delta epsilon zeta eta theta iota kappa"
+        + " lambda mu nu xi omicron pi rho sigmaf sigma tau upsilon phi chi psi omega";
+
+    // Name/code point pairs for everything outside the contiguous runs above
+    private static final String OTHERS = "quot 34 amp 38 apos 39 lt 60 gt 62 OElig 338 oelig 339"
+        + " Scaron 352 scaron 353 Yuml 376 fnof 402 circ 710 tilde 732 thetasym 977 upsih 978 piv 982"
+        + " ensp 8194 emsp 8195 thinsp 8201 zwnj 8204 zwj 8205 lrm 8206 rlm 8207 ndash 8211 mdash 8212"
+        + " lsquo 8216 rsquo 8217 sbquo 8218 ldquo 8220 rdquo 8221 bdquo 8222 dagger 8224 Dagger 8225"
+        + " bull 8226 hellip 8230 permil 8240 prime 8242 Prime 8243 lsaquo 8249 rsaquo 8250 oline 8254"
+        + " frasl 8260 euro 8364 image 8465 weierp 8472 real 8476 trade 8482 alefsym 8501 larr 8592"
+        + " uarr 8593 rarr 8594 darr 8595 harr 8596 crarr 8629 lArr 8656 uArr 8657 rArr 8658 dArr 8659"
+        + " hArr 8660 forall 8704 part 8706 exist 8707 empty 8709 nabla 8711 isin 8712 notin 8713"
+        + " ni 8715 prod 8719 sum 8721 minus 8722 lowast 8727 radic 8730 prop 8733 infin 8734 ang 8736"
+        + " and 8743 or 8744 cap 8745 cup 8746 int 8747 there4 8756 sim 8764 cong 8773 asymp 8776"
+        + " ne 8800 equiv 8801 le 8804 ge 8805 sub 8834 sup 8835 nsub 8836 sube 8838 supe 8839"
+        + " oplus 8853 otimes 8855 perp 8869 sdot 8901 lceil 8968 rceil 8969 lfloor 8970 rfloor 8971"
+        + " lang 9001 rang 9002 loz 9674 spades 9824 clubs 9827 hearts 9829 diams 9830";
+
+    // Numeric references to C1 controls mean the Windows-1252 character at that byte
+    private static final char[] WINDOWS_1252 = {
+        '\u20AC', 0, '\u201A', '\u0192', '\u201E', '\u2026', '\u2020', '\u2021',
+        '\u02C6', '\u2030', '\u0160', '\u2039', '\u0152', 0, '\u017D', 0,
+        0, '\u2018', '\u2019', '\u201C', '\u201D', '\u2022', '\u2013', '\u2014',
+        '\u02DC', '\u2122', '\u0161', '\u203A', '\u0153', 0, '\u017E', '\u0178'
+    };
+
+    // Trie node i: the char on the edge into it, its first child, its next sibling and the
+    // code point of the name ending there (-1 if none). Node 0 is the root.
+    private static char[] labels = new char[1024];
+    private static int[] children = new int[1024];
+    private static int[] siblings = new int[1024];
+    private static int[] values = new int[1024];
+    private static int nodeCount = 1;
+
+    static {
+        Arrays.fill(values, -1);
+        addRun(LATIN1, 0xA0);
+        addRun(GREEK_UPPER, 913);
+        addRun(GREEK_UPPER_2, 931);
+        addRun(GREEK_LOWER, 945);
+        String[] pairs = OTHERS.split(" ");
+        for (int i = 0; i < pairs.length; i += 2) {
+            add(pairs[i], Integer.parseInt(pairs[i + 1]));
+        }
+
+        labels = Arrays.copyOf(labels, nodeCount);
+        children = Arrays.copyOf(children, nodeCount);
+        siblings = Arrays.copyOf(siblings, nodeCount);
+        values = Arrays.copyOf(values, nodeCount);
+    }
+
+    private CharacterReferences() {
+    }
+
+    // Decodes every reference in text[start, end). Attribute values leave a reference
+    // without ';' alone when it runs into '=' or an alphanumeric, as browsers do.
+    static String decode(CharSequence text, int start, int end, boolean inAttribute) {
+        StringBuilder out = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            char ch = text.charAt(i);
+            if (ch != '&') {
+                out.append(ch);
+                i++;
+                continue;
+            }
+
+            int consumed = i + 1 < end && text.charAt(i + 1) == '#'
+                ? decodeNumeric(text, i, end, out)
+                : decodeNamed(text, i, end, inAttribute, out);
+            if (consumed == 0) {
+                out.append('&');
+                i++;
+            } else {
+                i += consumed;
+            }
+        }
+        return out.toString();
+    }
+
+    // Returns the number of chars consumed starting at '&', or 0 if this is not a reference
+    private static int decodeNumeric(CharSequence text, int ampersand, int end, StringBuilder out) {
+        int i = ampersand + 2;
+        int radix = 10;
+        if (i < end && (text.charAt(i) == 'x' || text.charAt(i) == 'X')) {
+            radix = 16;
+            i++;
+        }
+
+        int digitsStart = i;
+        int value = 0;
+        for (; i < end; i++) {
+            char ch = text.charAt(i);
+            int digit = ch < 0x80 ? Character.digit(ch, radix) : -1;
+            if (digit < 0) {
+                break;
+            }
+            // Saturate instead of overflowing; anything this large is invalid anyway
+            value = Math.min(value * radix + digit, Character.MAX_CODE_POINT + 1);
+        }
+        if (i == digitsStart) {
+            return 0;
+        }
+        if (i < end && text.charAt(i) == ';') {
+            i++;
+        }
+
+        if (value >= 0x80 && value <= 0x9F && WINDOWS_1252[value - 0x80] != 0) {
+            out.append(WINDOWS_1252[value - 0x80]);
+        } else if (value == 0 || value > Character.MAX_CODE_POINT
+                || (value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE)) {
+            out.append('\uFFFD');
+        } else {
+            out.appendCodePoint(value);
+        }
+        return i - ampersand;
+    }
+
+    private static int decodeNamed(CharSequence text, int ampersand, int end, boolean inAttribute,
+                                   StringBuilder out) {
+        // Longest name overall, and longest one that is allowed without ';'
+        int longest = 0;
+        int longestValue = -1;
+        int legacy = 0;
+        int legacyValue = -1;
+
+        int node = 0;
+        for (int i = ampersand + 1; i < end; i++) {
+            node = child(node, text.charAt(i));
+            if (node < 0) {
+                break;
+            }
+            int value = values[node];
+            if (value >= 0) {
+                longest = i - ampersand;
+                longestValue = value;
+                if (value < 0x100 && value != '\'') {
+                    legacy = longest;
+                    legacyValue = value;
+                }
+            }
+        }
+
+        int after = ampersand + 1 + longest;
+        if (longestValue >= 0 && after < end && text.charAt(after) == ';') {
+            out.appendCodePoint(longestValue);
+            return longest + 2;
+        }
+        if (legacyValue < 0) {
+            return 0;
+        }
+        after = ampersand + 1 + legacy;
+        if (inAttribute && after < end) {
+            char next = text.charAt(after);
+            if (next == '=' || Character.isLetterOrDigit(next)) {
+                return 0;
+            }
+        }
+        out.append((char) legacyValue);
+        return legacy + 1;
+    }
+
+    private static int child(int node, char label) {
+        for (int child = children[node]; child != 0; child = siblings[child]) {
+            if (labels[child] == label) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    private static void addRun(String names, int firstCodePoint) {
+        String[] split = names.split(" ");
+        for (int i = 0; i < split.length; i++) {
+            add(split[i], firstCodePoint + i);
+        }
+    }
+
+    private static void add(String name, int codePoint) {
+        int node = 0;
+        for (int i = 0; i < name.length(); i++) {
+            int next = child(node, name.charAt(i));
+            if (next < 0) {
+                if (nodeCount == labels.length) {
+                    grow();
+                }
+                next = nodeCount++;
+                labels[next] = name.charAt(i);
+                siblings[next] = children[node];
+                children[node] = next;
+            }
+            node = next;
+        }
+        values[node] = codePoint;
+    }
+
+    private static void grow() {
+        int capacity = labels.length * 2;
+        labels = Arrays.copyOf(labels, capacity);
+        children = Arrays.copyOf(children, capacity);
+        siblings = Arrays.copyOf(siblings, capacity);
+        values = Arrays.copyOf(values, capacity);
+        Arrays.fill(values, nodeCount, capacity, -1);
+    }
+}
@@ -0,0 +1,29 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.AttributeLoader;
+
+import java.util.function.BiConsumer;
+
+// Raw attribute text of a start tag, re-scanned with the tokenizer's attribute rules the
+// first time the element's attributes are read
+final class DeferredAttributes implements AttributeLoader {
+    private final String source;
+    private final int start;
+    private final boolean spanMode;
+
+    DeferredAttributes(String source, int start, boolean spanMode) {
+        this.source = source;
+        this.start = start;
+        this.spanMode = spanMode;
+    }
+
+    @Override
+    public void load(BiConsumer<String, CharSequence> sink) {
+        HtmlTokenizer tokenizer = new HtmlTokenizer(source, true, start, Integer.MAX_VALUE);
+        tokenizer.scanAttributesAt(start);
+        for (int i = 0; i < tokenizer.attrCount(); i++) {
+            sink.accept(tokenizer.attrName(i),
+                spanMode ? tokenizer.attrValueSpan(i) : tokenizer.attrValue(i));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Atoms;
+
+abstract class HtmlInput {
+    private final StringBuilder nameBuffer = new StringBuilder();
+
+    // True if a character exists at the given absolute index, pulling more input if needed
+    abstract boolean has(int index);
+
+    abstract char charAt(int index);
+
+    abstract String substring(int start, int end);
+
+    // Index of the first target at or after from, or the end of the input if there is none
+    int find(char target, int from) {
+        int index = from;
+        while (has(index) && charAt(index) != target) {
+            index++;
+        }
+        return index;
+    }
+
+    boolean contains(char target, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (charAt(i) == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A view of the range if the input outlives the tokenizer, otherwise a copy
+    CharSequence span(int start, int end) {
+        return substring(start, end);
+    }
+
+    // Canonical lower-case name for the range; copies through a reused buffer
+    String atom(int start, int end) {
+        nameBuffer.setLength(0);
+        for (int i = start; i < end; i++) {
+            nameBuffer.append(charAt(i));
+        }
+        return Atoms.intern(nameBuffer);
+    }
+
+    // Characters before index are no longer needed by the tokenizer
+    void release(int index) {
+    }
+
+    boolean regionMatchesIgnoreCase(int index, String expected) {
+        if (!has(index + expected.length() - 1)) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            char ch = charAt(index + i);
+            char other = expected.charAt(i);
+            if (ch != other && Character.toLowerCase(ch) != Character.toLowerCase(other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,17 +1,59 @@
 package com.tinybrowser.parser;
 
 import com.tinybrowser.dom.Document;
+import com.tinybrowser.dom.DomArena;
 import com.tinybrowser.dom.Element;
 import com.tinybrowser.dom.Node;
-import com.tinybrowser.dom.TextNode;
 
-import java.util.Stack;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+// A parser holds only configuration, so one instance can parse many documents at once;
+// each result carries its own doctype
 public class HtmlParser {
-    private String doctype;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private boolean spanMode;
+    private boolean lazyAttributes;
 
     public HtmlParser() {
-        this.doctype = "";
+    }
+
+    // In span mode text nodes and attribute values are views into the source String and are
+    // only copied when read. This keeps the whole source alive as long as the document is.
+    public boolean isSpanMode() {
+        return spanMode;
+    }
+
+    public void setSpanMode(boolean spanMode) {
+        this.spanMode = spanMode;
+    }
+
+    // In lazy attribute mode only id and class are parsed up front; every other attribute
+    // is parsed from the raw tag text the first time the element's attributes are read
+    public boolean isLazyAttributes() {
+        return lazyAttributes;
+    }
+
+    public void setLazyAttributes(boolean lazyAttributes) {
+        this.lazyAttributes = lazyAttributes;
     }
 
     public Node parse(String html) {
@@ -25,90 +67,221 @@ public class HtmlParser {
             return doc;
         }
 
-        HtmlTokenizer tokenizer = new HtmlTokenizer(html);
-        Stack<Element> elementStack = new Stack<>();
-        Element root = null;
-        Element currentParent = null;
+        return buildDocument(new HtmlTokenizer(html));
+    }
 
-        while (true) {
-            Token token = tokenizer.nextToken();
+    // Compact representation: the tree lives in a DomArena and is read through lightweight
+    // Element and TextNode facades, cutting per-node memory by roughly an order of magnitude
+    public Document parseCompactDocument(String html) {
+        if (html == null || html.isBlank()) {
+            return parseDocument(html);
+        }
+        return buildDocument(new HtmlTokenizer(html), compactBuilder(new DomArena(html.length() / 32)));
+    }
 
-            if (token.getType() == TokenType.EOF) {
-                break;
-            }
+    public Document parseCompactDocument(Reader reader) throws IOException {
+        try {
+            return buildDocument(new HtmlTokenizer(reader), compactBuilder(new DomArena()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private TreeBuilder compactBuilder(DomArena arena) {
+        TreeBuilder builder = new TreeBuilder(spanMode);
+        builder.useArena(arena);
+        return builder;
+    }
+
+    // Streaming mode for huge, repetitive documents: every element the filter matches is
+    // passed to the handler as soon as its subtree is complete and is then detached, so peak
+    // memory is bounded by the largest such subtree. The returned document holds what is left.
+    public Document parseDocument(Reader reader, SubtreeFilter filter, Consumer<Element> handler)
+            throws IOException {
+        if (filter == null || handler == null) {
+            throw new IllegalArgumentException("filter and handler must not be null");
+        }
+        TreeBuilder builder = new TreeBuilder(spanMode);
+        builder.streamSubtrees(filter, handler);
+        try {
+            return buildDocument(new HtmlTokenizer(reader), builder);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public Document parseDocument(Path file, SubtreeFilter filter, Consumer<Element> handler)
+            throws IOException {
+        try (Reader reader = new MappedFileReader(file, StandardCharsets.UTF_8)) {
+            return parseDocument(reader, filter, handler);
+        }
+    }
+
+    // Batch parsing: every file is read and parsed on its own virtual thread, at most
+    // DEFAULT_MAX_IN_FLIGHT at a time. Results come back in input order; a file that fails
+    // with an exception yields a result holding it instead of aborting the batch, while a
+    // VM Error such as OutOfMemoryError ends the batch and is rethrown to the caller.
+    public List<ParseResult> parseAll(Collection<Path> files) throws InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return parseAll(files, executor, DEFAULT_MAX_IN_FLIGHT);
+        }
+    }
+
+    public List<ParseResult> parseAll(Collection<Path> files, Executor executor) throws InterruptedException {
+        return parseAll(files, executor, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public List<ParseResult> parseAll(Collection<Path> files, Executor executor, int maxInFlight)
+            throws InterruptedException {
+        ParseResult[] results = new ParseResult[files != null ? files.size() : 0];
+        runBatch(files, executor, maxInFlight, (index, result) -> results[index] = result);
+        return Arrays.asList(results);
+    }
+
+    // Completion-order variant: onComplete runs on the calling thread as each file finishes
+    public void parseAll(Collection<Path> files, Executor executor, int maxInFlight,
+                         Consumer<ParseResult> onComplete) throws InterruptedException {
+        if (onComplete == null) {
+            throw new IllegalArgumentException("onComplete must not be null");
+        }
+        runBatch(files, executor, maxInFlight, (index, result) -> onComplete.accept(result));
+    }
 
-            switch (token.getType()) {
-                case DOCTYPE:
-                    doctype = token.getContent();
-                    break;
-
-                case START_TAG:
-                    Element element = new Element(token.getTagName());
-                    for (var entry : token.getAttributes().entrySet()) {
-                        element.setAttribute(entry.getKey(), entry.getValue());
-                    }
-
-                    if (currentParent != null) {
-                        currentParent.appendChild(element);
-                    } else if (root == null) {
-                        root = element;
-                    }
-
-                    elementStack.push(element);
-                    currentParent = element;
-                    break;
-
-                case END_TAG:
-                    if (!elementStack.isEmpty()) {
-                        Element closingElement = elementStack.pop();
-
-                        // Validate tag name matches (optional - for robustness)
-                        if (!closingElement.getTagName().equals(token.getTagName())) {
-                            // Tag mismatch - for now we'll just ignore it
-                            // In a real browser, this would trigger error recovery
-                        }
-
-                        currentParent = elementStack.isEmpty() ? null : elementStack.peek();
-                    }
-                    break;
-
-                case SELF_CLOSING_TAG:
-                    Element selfClosing = new Element(token.getTagName());
-                    for (var entry : token.getAttributes().entrySet()) {
-                        selfClosing.setAttribute(entry.getKey(), entry.getValue());
-                    }
-
-                    if (currentParent != null) {
-                        currentParent.appendChild(selfClosing);
-                    } else if (root == null) {
-                        root = selfClosing;
-                    }
-                    break;
-
-                case TEXT:
-                    TextNode textNode = new TextNode(token.getContent());
-                    if (currentParent != null) {
-                        currentParent.appendChild(textNode);
-                    }
-                    break;
-
-                case COMMENT:
-                    // Skip comments for now
-                    break;
+    private void runBatch(Collection<Path> files, Executor executor, int maxInFlight,
+                          BiConsumer<Integer, ParseResult> sink) throws InterruptedException {
+        if (files == null || executor == null) {
+            throw new IllegalArgumentException("files and executor must not be null");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+
+        // Workers only hand results back; the calling thread delivers them, and waiting for
+        // a result is also how it waits for a free slot
+        BlockingQueue<Map.Entry<Integer, ParseResult>> completed = new LinkedBlockingQueue<>();
+        int submitted = 0;
+        int delivered = 0;
+        for (Path file : files) {
+            if (submitted - delivered == maxInFlight) {
+                deliver(completed.take(), sink);
+                delivered++;
             }
+            int index = submitted++;
+            Runnable task = () -> {
+                ParseResult result;
+                try {
+                    result = parseFile(file);
+                } catch (Error e) {
+                    // Passed on for the caller to rethrow, so it neither waits forever nor
+                    // carries on in a damaged VM
+                    completed.add(Map.entry(index, new ParseResult(file, null, e)));
+                    throw e;
+                }
+                completed.add(Map.entry(index, result));
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                completed.add(Map.entry(index, new ParseResult(file, null, e)));
+            }
+        }
+        while (delivered < submitted) {
+            deliver(completed.take(), sink);
+            delivered++;
+        }
+    }
+
+    // An Error from a worker is rethrown on the calling thread rather than delivered
+    private static void deliver(Map.Entry<Integer, ParseResult> done, BiConsumer<Integer, ParseResult> sink) {
+        if (done.getValue().getError() instanceof Error error) {
+            throw error;
+        }
+        sink.accept(done.getKey(), done.getValue());
+    }
+
+    private ParseResult parseFile(Path file) {
+        try {
+            return new ParseResult(file, parseDocument(file), null);
+        } catch (IOException | RuntimeException e) {
+            return new ParseResult(file, null, e);
         }
+    }
+
+    // Event-driven parsing: reports tokens to the handler without building a DOM
+    public void parse(String html, HtmlTokenHandler handler) {
+        new HtmlTokenizer(html).tokenize(handler);
+    }
 
-        // If no root was created, create a default one
-        if (root == null) {
-            root = new Element("html");
+    public void parse(Reader reader, HtmlTokenHandler handler) throws IOException {
+        try {
+            new HtmlTokenizer(reader).tokenize(handler);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
+
+    // Tokenizes segments of a large document in parallel on the common pool; see
+    // ParallelTokenizer. Inputs too small to split are parsed sequentially.
+    public Document parseDocumentParallel(String html) {
+        return parseDocumentParallel(html, ForkJoinPool.commonPool());
+    }
+
+    public Document parseDocumentParallel(String html, ForkJoinPool pool) {
+        if (html == null || html.isBlank()) {
+            return parseDocument(html);
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+
+        TreeBuilder builder = new TreeBuilder(spanMode);
+        ParallelTokenizer.tokenize(html, true, lazyAttributes, pool, builder);
+        return builder.finish();
+    }
+
+    // Streams the reader through the tokenizer's bounded buffer instead of
+    // materializing the whole document as a String first
+    public Document parseDocument(Reader reader) throws IOException {
+        try {
+            return buildDocument(new HtmlTokenizer(reader));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public Document parseDocument(Path file) throws IOException {
+        return parseDocument(file, StandardCharsets.UTF_8);
+    }
+
+    // Tokenizes straight from a memory mapping of the file, decoding as it goes
+    public Document parseDocument(Path file, Charset charset) throws IOException {
+        try (Reader reader = new MappedFileReader(file, charset)) {
+            return parseDocument(reader);
+        }
+    }
+
+    // Applies an edit to a document parsed from source: removedLength chars at offset are
+    // replaced by inserted. Only the content of the smallest enclosing element is parsed
+    // again and spliced into the document, which is returned; when the edit cannot be
+    // isolated that way the edited source is parsed in full. See Reparser.
+    public Document reparse(Document document, String source, int offset, int removedLength, String inserted) {
+        return Reparser.reparse(this, document, source, offset, removedLength, inserted);
+    }
+
+    // Parses input as it arrives; see IncrementalHtmlParser
+    public IncrementalHtmlParser incremental() {
+        HtmlTokenizer tokenizer = HtmlTokenizer.incremental();
+        tokenizer.setLazyAttributes(lazyAttributes);
+        return new IncrementalHtmlParser(tokenizer, new TreeBuilder(spanMode));
+    }
 
-        Document document = new Document(root);
-        document.setDoctype(doctype);
-        return document;
+    private Document buildDocument(HtmlTokenizer tokenizer) {
+        return buildDocument(tokenizer, new TreeBuilder(spanMode));
     }
 
-    public String getDoctype() {
-        return doctype;
+    private Document buildDocument(HtmlTokenizer tokenizer, TreeBuilder builder) {
+        tokenizer.setLazyAttributes(lazyAttributes);
+        tokenizer.tokenize(builder);
+        return builder.finish();
     }
 }
@@ -0,0 +1,30 @@
+package com.tinybrowser.parser;
+
+/**
+ * Receives tokens as HtmlTokenizer scans them, without any DOM being built. Every
+ * callback defaults to doing nothing, so a handler only overrides what it needs.
+ *
+ * Character sequences passed in are views into the source when it is a String and copies
+ * otherwise; the TagAttributes view is only valid until the callback returns.
+ */
+public interface HtmlTokenHandler {
+    // Called before tokens are dispatched. During a callback, the tokenizer's tokenStart()
+    // and tokenEnd() are the source offsets of the token being reported.
+    default void setTokenizer(HtmlTokenizer tokenizer) {
+    }
+
+    default void doctype(CharSequence content) {
+    }
+
+    default void startTag(String name, TagAttributes attributes, boolean selfClosing) {
+    }
+
+    default void endTag(String name) {
+    }
+
+    default void text(CharSequence text) {
+    }
+
+    default void comment(CharSequence content) {
+    }
+}
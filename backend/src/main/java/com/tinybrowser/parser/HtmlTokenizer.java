@@ -1,171 +1,441 @@
 package com.tinybrowser.parser;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.tinybrowser.dom.AttributeLoader;
+import com.tinybrowser.dom.Atoms;
+
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+public final class HtmlTokenizer {
+    public static final int DEFAULT_BUFFER_SIZE = ReaderInput.DEFAULT_BUFFER_SIZE;
+
+    // Elements whose content is raw text: nothing inside is a tag except the matching end
+    // tag. Tokenizer state 0 is ordinary data; state i is inside RAW_TEXT_TAGS[i - 1].
+    // Character references are still decoded in states up to LAST_ESCAPABLE_STATE.
+    private static final String[] RAW_TEXT_TAGS = {
+        "textarea", "title", "script", "style", "xmp", "iframe", "noembed", "noframes"
+    };
+    private static final String[] RAW_TEXT_END_TAGS = new String[RAW_TEXT_TAGS.length];
+
+    static {
+        for (int i = 0; i < RAW_TEXT_TAGS.length; i++) {
+            RAW_TEXT_END_TAGS[i] = "</" + RAW_TEXT_TAGS[i];
+        }
+    }
+
+    static final int DATA_STATE = 0;
+    private static final int LAST_ESCAPABLE_STATE = 2;
 
-public class HtmlTokenizer {
-    private final String input;
+    private final HtmlInput input;
+    private final PushInput pushInput;
     private int position;
     private boolean skipWhitespaceText;
+    private int limit = Integer.MAX_VALUE;
+    private boolean lazyAttributes;
+    private int state = DATA_STATE;
+
+    // Current token. advance() overwrites these in place; offsets index into the input and
+    // stay readable until the next call.
+    private TokenType type;
+    private int tokenStart;
+    private int nameStart;
+    private int nameEnd;
+    private int contentStart;
+    private int contentEnd;
+    private int attrCount;
+    private int[] attrOffsets = new int[16];
+    private int valueStart;
+    private int valueEnd;
+    private int attributesStart;
+    private int attributesEnd;
+    private boolean deferred;
+    private int tokenState;
+    private final TagAttributes attributes = new TagAttributes(this);
 
     public HtmlTokenizer(String input) {
         this(input, true);
     }
 
     public HtmlTokenizer(String input, boolean skipWhitespaceText) {
-        this.input = input != null ? input : "";
+        this(new StringInput(input != null ? input : ""), skipWhitespaceText);
+    }
+
+    // Streaming mode: the reader is consumed through a fixed-size ring buffer, so memory use
+    // does not grow with the document. I/O errors surface as UncheckedIOException.
+    public HtmlTokenizer(Reader reader) {
+        this(reader, true);
+    }
+
+    public HtmlTokenizer(Reader reader, boolean skipWhitespaceText) {
+        this(reader, skipWhitespaceText, DEFAULT_BUFFER_SIZE);
+    }
+
+    public HtmlTokenizer(Reader reader, boolean skipWhitespaceText, int bufferSize) {
+        this(new ReaderInput(reader, bufferSize), skipWhitespaceText);
+    }
+
+    public HtmlTokenizer(ReadableByteChannel channel, Charset charset) {
+        this(channel, charset, true);
+    }
+
+    public HtmlTokenizer(ReadableByteChannel channel, Charset charset, boolean skipWhitespaceText) {
+        this(Channels.newReader(channel, charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1), skipWhitespaceText);
+    }
+
+    // Segment mode for ParallelTokenizer: starts at an arbitrary offset and reports EOF at
+    // the first token starting at or after limit. The last token may run past limit.
+    HtmlTokenizer(String input, boolean skipWhitespaceText, int start, int limit) {
+        this(new StringInput(input), skipWhitespaceText);
+        this.position = start;
+        this.limit = limit;
+    }
+
+    private HtmlTokenizer(HtmlInput input, boolean skipWhitespaceText) {
+        this.input = input;
+        this.pushInput = input instanceof PushInput push ? push : null;
         this.position = 0;
         this.skipWhitespaceText = skipWhitespaceText;
     }
 
+    // Incremental mode: input arrives through feed() and advance() returns NEEDS_INPUT once
+    // every complete token has been read. A token cut off by a chunk boundary is rescanned
+    // from its start when the rest arrives; end() flushes whatever is left.
+    public static HtmlTokenizer incremental() {
+        return incremental(true);
+    }
+
+    public static HtmlTokenizer incremental(boolean skipWhitespaceText) {
+        return new HtmlTokenizer(new PushInput(), skipWhitespaceText);
+    }
+
+    public void feed(CharSequence chunk) {
+        requireIncremental().append(chunk != null ? chunk : "");
+    }
+
+    public void end() {
+        requireIncremental().end();
+    }
+
+    private PushInput requireIncremental() {
+        if (pushInput == null) {
+            throw new IllegalStateException("Tokenizer was not created with HtmlTokenizer.incremental()");
+        }
+        return pushInput;
+    }
+
+    // Lazy attribute mode: start tags only record id and class; every other attribute is
+    // skipped over and left in the raw attribute text (see attributesStart())
+    public boolean isLazyAttributes() {
+        return lazyAttributes;
+    }
+
+    public void setLazyAttributes(boolean lazyAttributes) {
+        this.lazyAttributes = lazyAttributes;
+    }
+
     public Token nextToken() {
-        if (position >= input.length()) {
-            return new Token(TokenType.EOF);
+        TokenType tokenType = advance();
+
+        switch (tokenType) {
+            case START_TAG:
+            case SELF_CLOSING_TAG:
+                Token tag = new Token(tokenType, name());
+                for (int i = 0; i < attrCount; i++) {
+                    tag.setAttribute(attrName(i), attrValue(i));
+                }
+                return tag;
+            case END_TAG:
+                return new Token(tokenType, name());
+            case TEXT:
+            case COMMENT:
+            case DOCTYPE:
+                Token token = new Token(tokenType);
+                token.setContent(content());
+                return token;
+            default:
+                return new Token(tokenType);
+        }
+    }
+
+    // Cursor API: moves to the next token without allocating and returns its type
+    public TokenType advance() {
+        while (true) {
+            attrCount = 0;
+            nameStart = nameEnd = contentStart = contentEnd = -1;
+            attributesStart = attributesEnd = -1;
+            deferred = false;
+            input.release(position);
+            tokenStart = position;
+            tokenState = state;
+
+            if (tokenStart >= limit) {
+                return type = TokenType.EOF;
+            }
+            if (pushInput != null && !pushInput.resume()) {
+                return type = TokenType.NEEDS_INPUT;
+            }
+
+            TokenType scanned = scan();
+
+            if (pushInput != null && pushInput.starved()) {
+                // The token ran into the end of the data fed so far; rescan it later
+                position = tokenStart;
+                state = tokenState;
+                waitForTerminator();
+                return type = TokenType.NEEDS_INPUT;
+            }
+            if (scanned != null) {
+                return type = scanned;
+            }
+        }
+    }
+
+    // A raw-text body can only end at its end tag, and a comment at "-->", so a starved one
+    // is not rescanned for every '<' or '>' in the chunks that follow
+    private void waitForTerminator() {
+        if (tokenState != DATA_STATE) {
+            // The end tag also needs the character after its name
+            pushInput.waitFor(RAW_TEXT_END_TAGS[tokenState - 1], 1, tokenStart);
+        } else if (pushInput.has(tokenStart + 3) && pushInput.regionMatchesIgnoreCase(tokenStart, "<!--")) {
+            pushInput.waitFor("-->", 0, tokenStart + 4);
         }
+    }
+
+    // Tokenizer state the current token was scanned in, and the state the next one will be;
+    // used by ParallelTokenizer to check that a speculative stream lines up
+    int tokenState() {
+        return tokenState;
+    }
 
-        char current = input.charAt(position);
+    int state() {
+        return state;
+    }
+
+    void setState(int state) {
+        this.state = state;
+    }
+
+    // Push API: reports the current token to the handler
+    public void dispatch(HtmlTokenHandler handler) {
+        switch (type) {
+            case START_TAG:
+            case SELF_CLOSING_TAG:
+                handler.startTag(name(), attributes, type == TokenType.SELF_CLOSING_TAG);
+                break;
+            case END_TAG:
+                handler.endTag(name());
+                break;
+            case TEXT:
+                handler.text(contentSpan());
+                break;
+            case COMMENT:
+                handler.comment(contentSpan());
+                break;
+            case DOCTYPE:
+                handler.doctype(contentSpan());
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Drives the handler to the end of the input, or in incremental mode until the data
+    // fed so far is used up; returns EOF or NEEDS_INPUT accordingly
+    public TokenType tokenize(HtmlTokenHandler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("handler must not be null");
+        }
+        handler.setTokenizer(this);
+        TokenType tokenType;
+        while ((tokenType = advance()) != TokenType.EOF && tokenType != TokenType.NEEDS_INPUT) {
+            dispatch(handler);
+        }
+        return tokenType;
+    }
+
+    // Points the cursor at a token recorded by TokenBuffer over the same input
+    void load(TokenBuffer buffer, int index) {
+        type = buffer.type(index);
+        tokenStart = buffer.get(index, TokenBuffer.TOKEN_START);
+        position = buffer.get(index, TokenBuffer.TOKEN_END);
+        nameStart = buffer.get(index, TokenBuffer.NAME_START);
+        nameEnd = buffer.get(index, TokenBuffer.NAME_END);
+        contentStart = buffer.get(index, TokenBuffer.CONTENT_START);
+        contentEnd = buffer.get(index, TokenBuffer.CONTENT_END);
+        attributesStart = buffer.get(index, TokenBuffer.ATTRS_START);
+        attributesEnd = buffer.get(index, TokenBuffer.ATTRS_END);
+        deferred = buffer.get(index, TokenBuffer.DEFERRED) != 0;
+        tokenState = buffer.get(index, TokenBuffer.STATE);
+        attrCount = buffer.get(index, TokenBuffer.ATTR_COUNT);
+        if (attrCount * 4 > attrOffsets.length) {
+            attrOffsets = new int[attrCount * 4];
+        }
+        System.arraycopy(buffer.attrs(), buffer.get(index, TokenBuffer.ATTR_INDEX), attrOffsets, 0, attrCount * 4);
+    }
+
+    // Returns null for a whitespace-only text run that is being skipped
+    private TokenType scan() {
+        if (!input.has(position)) {
+            return TokenType.EOF;
+        }
+
+        if (state != DATA_STATE) {
+            boolean significant = scanRawText();
+            if (contentStart < 0) {
+                return null; // empty body
+            }
+            return significant || !skipWhitespaceText ? TokenType.TEXT : null;
+        }
 
         // Check for tag start
-        if (current == '<') {
-            return parseTag();
+        if (input.charAt(position) == '<') {
+            return scanTag();
         }
 
-        // Otherwise, it's text content
-        return parseText();
+        // Otherwise, it's text content; whitespace-only runs are skipped if configured
+        return scanText() || !skipWhitespaceText ? TokenType.TEXT : null;
     }
 
-    private Token parseTag() {
+    private TokenType scanTag() {
         position++; // Skip '<'
 
-        if (position >= input.length()) {
-            return new Token(TokenType.EOF);
+        if (!input.has(position)) {
+            return TokenType.EOF;
         }
 
         char next = input.charAt(position);
 
         // Check for comment: <!--
-        if (next == '!' && position + 2 < input.length() &&
+        if (next == '!' && input.has(position + 2) &&
             input.charAt(position + 1) == '-' && input.charAt(position + 2) == '-') {
-            return parseComment();
+            return scanComment();
         }
 
         // Check for DOCTYPE: <!DOCTYPE
-        if (next == '!' && position + 7 < input.length() &&
-            input.substring(position, position + 8).equalsIgnoreCase("!DOCTYPE")) {
-            return parseDoctype();
+        if (next == '!' && input.regionMatchesIgnoreCase(position, "!DOCTYPE")) {
+            return scanDoctype();
         }
 
         // Check for end tag: </
         if (next == '/') {
-            return parseEndTag();
+            return scanEndTag();
         }
 
         // Otherwise, it's a start tag or self-closing tag
-        return parseStartTag();
+        return scanStartTag();
     }
 
-    private Token parseComment() {
+    private TokenType scanComment() {
         position += 3; // Skip '!--'
-
-        StringBuilder content = new StringBuilder();
-        while (position < input.length()) {
-            if (position + 2 < input.length() &&
-                input.charAt(position) == '-' &&
-                input.charAt(position + 1) == '-' &&
-                input.charAt(position + 2) == '>') {
-                position += 3; // Skip '-->'
-                break;
+        contentStart = position;
+
+        // Jump between '>' characters, which are rarer than '-', until one closes the comment
+        int close = input.find('>', position);
+        while (input.has(close)) {
+            if (close - 2 >= contentStart && input.charAt(close - 1) == '-' && input.charAt(close - 2) == '-') {
+                contentEnd = close - 2;
+                position = close + 1; // Skip '-->'
+                return TokenType.COMMENT;
             }
-            content.append(input.charAt(position));
-            position++;
+            close = input.find('>', close + 1);
         }
 
-        Token token = new Token(TokenType.COMMENT);
-        token.setContent(content.toString());
-        return token;
+        contentEnd = position = close;
+        return TokenType.COMMENT;
     }
 
-    private Token parseDoctype() {
-        StringBuilder content = new StringBuilder();
-        while (position < input.length() && input.charAt(position) != '>') {
-            content.append(input.charAt(position));
-            position++;
-        }
-        if (position < input.length()) {
+    private TokenType scanDoctype() {
+        contentStart = position;
+        position = input.find('>', position);
+        contentEnd = position;
+        if (input.has(position)) {
             position++; // Skip '>'
         }
 
-        Token token = new Token(TokenType.DOCTYPE);
-        token.setContent(content.toString().trim());
-        return token;
+        // Trim the same characters String.trim() would
+        while (contentStart < contentEnd && input.charAt(contentStart) <= ' ') {
+            contentStart++;
+        }
+        while (contentEnd > contentStart && input.charAt(contentEnd - 1) <= ' ') {
+            contentEnd--;
+        }
+
+        return TokenType.DOCTYPE;
     }
 
-    private Token parseEndTag() {
+    private TokenType scanEndTag() {
         position++; // Skip '/'
 
-        StringBuilder tagName = new StringBuilder();
-        while (position < input.length()) {
+        skipWhitespace();
+        nameStart = position;
+        while (input.has(position)) {
             char ch = input.charAt(position);
-            if (ch == '>') {
-                position++; // Skip '>'
+            if (ch == '>' || Character.isWhitespace(ch)) {
                 break;
             }
-            if (!Character.isWhitespace(ch)) {
-                tagName.append(ch);
-            }
             position++;
         }
+        nameEnd = position;
 
-        return new Token(TokenType.END_TAG, tagName.toString().toLowerCase());
+        while (input.has(position)) {
+            if (input.charAt(position++) == '>') {
+                break;
+            }
+        }
+
+        return TokenType.END_TAG;
     }
 
-    private Token parseStartTag() {
+    private TokenType scanStartTag() {
         // Parse tag name
-        StringBuilder tagName = new StringBuilder();
-        while (position < input.length()) {
+        nameStart = position;
+        while (input.has(position)) {
             char ch = input.charAt(position);
             if (Character.isWhitespace(ch) || ch == '>' || ch == '/') {
                 break;
             }
-            tagName.append(ch);
             position++;
         }
-
-        String tag = tagName.toString().toLowerCase();
+        nameEnd = position;
 
         // Skip whitespace
         skipWhitespace();
 
         // Parse attributes
-        Map<String, String> attributes = parseAttributes();
+        attributesStart = position;
+        scanAttributes();
+        attributesEnd = position;
 
         // Check for self-closing
         boolean selfClosing = false;
-        if (position < input.length() && input.charAt(position) == '/') {
+        if (input.has(position) && input.charAt(position) == '/') {
             selfClosing = true;
             position++; // Skip '/'
         }
 
         // Skip to '>'
-        while (position < input.length() && input.charAt(position) != '>') {
+        while (input.has(position) && input.charAt(position) != '>') {
             position++;
         }
-        if (position < input.length()) {
+        if (input.has(position)) {
             position++; // Skip '>'
         }
 
-        Token token = new Token(selfClosing ? TokenType.SELF_CLOSING_TAG : TokenType.START_TAG, tag);
-        for (Map.Entry<String, String> attr : attributes.entrySet()) {
-            token.setAttribute(attr.getKey(), attr.getValue());
+        if (selfClosing) {
+            return TokenType.SELF_CLOSING_TAG;
         }
-
-        return token;
+        state = rawTextState(nameStart, nameEnd);
+        return TokenType.START_TAG;
     }
 
-    private Map<String, String> parseAttributes() {
-        Map<String, String> attributes = new HashMap<>();
-
-        while (position < input.length()) {
+    private void scanAttributes() {
+        while (input.has(position)) {
             char ch = input.charAt(position);
 
             // Stop at tag end or self-closing indicator
@@ -180,18 +450,17 @@ public class HtmlTokenizer {
             }
 
             // Parse attribute name
-            StringBuilder attrName = new StringBuilder();
-            while (position < input.length()) {
+            int attrNameStart = position;
+            while (input.has(position)) {
                 ch = input.charAt(position);
                 if (ch == '=' || Character.isWhitespace(ch) || ch == '>' || ch == '/') {
                     break;
                 }
-                attrName.append(ch);
                 position++;
             }
+            int attrNameEnd = position;
 
-            String name = attrName.toString().toLowerCase();
-            if (name.isEmpty()) {
+            if (attrNameStart == attrNameEnd) {
                 break;
             }
 
@@ -199,25 +468,25 @@ public class HtmlTokenizer {
             skipWhitespace();
 
             // Check for '='
-            String value = "";
-            if (position < input.length() && input.charAt(position) == '=') {
+            valueStart = position;
+            valueEnd = position;
+            if (input.has(position) && input.charAt(position) == '=') {
                 position++; // Skip '='
                 skipWhitespace();
 
                 // Parse attribute value
-                value = parseAttributeValue();
+                scanAttributeValue();
             }
 
-            attributes.put(name, value);
+            addAttribute(attrNameStart, attrNameEnd, valueStart, valueEnd);
             skipWhitespace();
         }
-
-        return attributes;
     }
 
-    private String parseAttributeValue() {
-        if (position >= input.length()) {
-            return "";
+    private void scanAttributeValue() {
+        valueStart = valueEnd = position;
+        if (!input.has(position)) {
+            return;
         }
 
         char quote = input.charAt(position);
@@ -225,68 +494,288 @@ public class HtmlTokenizer {
         // Quoted value
         if (quote == '"' || quote == '\'') {
             position++; // Skip opening quote
-            StringBuilder value = new StringBuilder();
-
-            while (position < input.length()) {
-                char ch = input.charAt(position);
-                if (ch == quote) {
-                    position++; // Skip closing quote
-                    break;
-                }
-                value.append(ch);
-                position++;
+            valueStart = position;
+            position = input.find(quote, position);
+            valueEnd = position;
+            if (input.has(position)) {
+                position++; // Skip closing quote
             }
-            return value.toString();
+            return;
         }
 
         // Unquoted value
-        StringBuilder value = new StringBuilder();
-        while (position < input.length()) {
+        while (input.has(position)) {
             char ch = input.charAt(position);
             if (Character.isWhitespace(ch) || ch == '>' || ch == '/') {
                 break;
             }
-            value.append(ch);
             position++;
         }
-        return value.toString();
+        valueEnd = position;
+    }
+
+    private void addAttribute(int attrNameStart, int attrNameEnd, int valueStart, int valueEnd) {
+        if (lazyAttributes && !isEagerAttribute(attrNameStart, attrNameEnd)) {
+            deferred = true;
+            return;
+        }
+        int base = attrCount * 4;
+        if (base + 4 > attrOffsets.length) {
+            attrOffsets = Arrays.copyOf(attrOffsets, attrOffsets.length * 2);
+        }
+        attrOffsets[base] = attrNameStart;
+        attrOffsets[base + 1] = attrNameEnd;
+        attrOffsets[base + 2] = valueStart;
+        attrOffsets[base + 3] = valueEnd;
+        attrCount++;
+    }
+
+    private boolean isEagerAttribute(int attrNameStart, int attrNameEnd) {
+        return switch (attrNameEnd - attrNameStart) {
+            case 2 -> input.regionMatchesIgnoreCase(attrNameStart, "id");
+            case 5 -> input.regionMatchesIgnoreCase(attrNameStart, "class");
+            default -> false;
+        };
     }
 
-    private Token parseText() {
-        StringBuilder text = new StringBuilder();
+    // Scans a raw attribute region recorded earlier, with every attribute kept
+    void scanAttributesAt(int start) {
+        attrCount = 0;
+        position = start;
+        scanAttributes();
+    }
 
-        while (position < input.length()) {
-            char ch = input.charAt(position);
-            if (ch == '<') {
+    // Returns true if the run contains anything other than whitespace
+    private boolean scanText() {
+        contentStart = position;
+        position = input.find('<', position);
+        contentEnd = position;
+        return isSignificant(contentStart, contentEnd);
+    }
+
+    // Bulk-scans raw text up to the matching end tag, which is left for the next token.
+    // An empty body produces no text token.
+    private boolean scanRawText() {
+        String endTag = RAW_TEXT_TAGS[state - 1];
+        contentStart = position;
+        while (true) {
+            position = input.find('<', position);
+            if (!input.has(position) || isEndTag(position, endTag)) {
                 break;
             }
-            text.append(ch);
             position++;
         }
+        contentEnd = position;
+        state = DATA_STATE;
 
-        String content = text.toString();
+        if (contentStart == contentEnd) {
+            contentStart = contentEnd = -1;
+            return false;
+        }
+        return isSignificant(contentStart, contentEnd);
+    }
 
-        // Skip whitespace-only text nodes if configured
-        if (skipWhitespaceText && content.trim().isEmpty()) {
-            return nextToken();
+    private boolean isEndTag(int index, String tagName) {
+        if (!input.has(index + 1) || input.charAt(index + 1) != '/'
+                || !input.regionMatchesIgnoreCase(index + 2, tagName)) {
+            return false;
+        }
+        int after = index + 2 + tagName.length();
+        if (!input.has(after)) {
+            return true;
         }
+        char ch = input.charAt(after);
+        return ch == '>' || ch == '/' || Character.isWhitespace(ch);
+    }
 
-        Token token = new Token(TokenType.TEXT);
-        token.setContent(content);
-        return token;
+    static boolean isRawTextElement(String name) {
+        for (String tag : RAW_TEXT_TAGS) {
+            if (tag.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int rawTextState(int start, int end) {
+        for (int i = 0; i < RAW_TEXT_TAGS.length; i++) {
+            if (RAW_TEXT_TAGS[i].length() == end - start && input.regionMatchesIgnoreCase(start, RAW_TEXT_TAGS[i])) {
+                return i + 1;
+            }
+        }
+        return DATA_STATE;
+    }
+
+    private boolean isSignificant(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void skipWhitespace() {
-        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+        while (input.has(position) && Character.isWhitespace(input.charAt(position))) {
             position++;
         }
     }
 
+    public TokenType type() {
+        return type;
+    }
+
+    public int tokenStart() {
+        return tokenStart;
+    }
+
+    public int tokenEnd() {
+        return position;
+    }
+
+    public int nameStart() {
+        return nameStart;
+    }
+
+    public int nameEnd() {
+        return nameEnd;
+    }
+
+    // Canonical lower-case tag name (see Atoms) of the current start, end or self-closing tag
+    public String name() {
+        return nameStart < 0 ? null : input.atom(nameStart, nameEnd);
+    }
+
+    // Pre-assigned Atoms id of the current tag name, or Atoms.UNKNOWN_TAG
+    public int tagId() {
+        return Atoms.tagId(name());
+    }
+
+    public int contentStart() {
+        return contentStart;
+    }
+
+    public int contentEnd() {
+        return contentEnd;
+    }
+
+    // Text of the current text, comment or doctype token
+    // Character references in text are decoded; comments, doctypes and script-like raw
+    // text are returned as written
+    public String content() {
+        if (contentStart < 0) {
+            return null;
+        }
+        String content = input.substring(contentStart, contentEnd);
+        if (decodesContent() && content.indexOf('&') >= 0) {
+            return CharacterReferences.decode(content, 0, content.length(), false);
+        }
+        return content;
+    }
+
+    // Like content(), but returns a view into the input instead of a copy when the
+    // input is a String; views into streamed input would be overwritten, so those are copied,
+    // and so is text with character references to decode
+    public CharSequence contentSpan() {
+        if (contentStart < 0) {
+            return null;
+        }
+        if (decodesContent() && input.contains('&', contentStart, contentEnd)) {
+            return content();
+        }
+        return input.span(contentStart, contentEnd);
+    }
+
+    private boolean decodesContent() {
+        return type == TokenType.TEXT && tokenState <= LAST_ESCAPABLE_STATE;
+    }
+
+    // Raw attribute text of the current start or self-closing tag, including any attributes
+    // lazy mode skipped
+    public int attributesStart() {
+        return attributesStart;
+    }
+
+    public int attributesEnd() {
+        return attributesEnd;
+    }
+
+    // True if lazy mode skipped attributes of the current tag
+    public boolean hasDeferredAttributes() {
+        return deferred;
+    }
+
+    // Loader for the attributes lazy mode skipped, or null if none were. A String input is
+    // shared; other inputs reuse their buffers, so the raw text is copied out.
+    AttributeLoader deferredAttributes(boolean spanMode) {
+        if (!deferred) {
+            return null;
+        }
+        if (input instanceof StringInput string) {
+            return new DeferredAttributes(string.source(), attributesStart, spanMode);
+        }
+        return new DeferredAttributes(input.substring(attributesStart, attributesEnd), 0, spanMode);
+    }
+
+    public int attrCount() {
+        return attrCount;
+    }
+
+    public int attrNameStart(int index) {
+        return attrOffset(index, 0);
+    }
+
+    public int attrNameEnd(int index) {
+        return attrOffset(index, 1);
+    }
+
+    public int attrValueStart(int index) {
+        return attrOffset(index, 2);
+    }
+
+    public int attrValueEnd(int index) {
+        return attrOffset(index, 3);
+    }
+
+    public String attrName(int index) {
+        return input.atom(attrNameStart(index), attrNameEnd(index));
+    }
+
+    // Attribute values have their character references decoded
+    public String attrValue(int index) {
+        String value = input.substring(attrValueStart(index), attrValueEnd(index));
+        if (value.indexOf('&') >= 0) {
+            return CharacterReferences.decode(value, 0, value.length(), true);
+        }
+        return value;
+    }
+
+    public CharSequence attrValueSpan(int index) {
+        int start = attrValueStart(index);
+        int end = attrValueEnd(index);
+        if (input.contains('&', start, end)) {
+            return attrValue(index);
+        }
+        return input.span(start, end);
+    }
+
+    // Reads the input at an offset reported for the current token
+    public char charAt(int offset) {
+        return input.charAt(offset);
+    }
+
+    private int attrOffset(int index, int field) {
+        if (index < 0 || index >= attrCount) {
+            throw new IndexOutOfBoundsException("Attribute index " + index + " out of range for " + attrCount);
+        }
+        return attrOffsets[index * 4 + field];
+    }
+
     public int getPosition() {
         return position;
     }
 
     public boolean hasMoreTokens() {
-        return position < input.length();
+        return input.has(position);
     }
 }
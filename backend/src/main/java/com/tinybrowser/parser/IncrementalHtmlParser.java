@@ -0,0 +1,44 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Document;
+import com.tinybrowser.dom.Element;
+
+// Builds a document from chunks as they arrive, e.g. straight off a socket. Each feed()
+// tokenizes and attaches every token completed by that chunk; end() closes the input
+// and returns the finished document.
+public class IncrementalHtmlParser {
+    private final TreeBuilder builder;
+    private final HtmlTokenizer tokenizer;
+    private Document document;
+
+    IncrementalHtmlParser(HtmlTokenizer tokenizer, TreeBuilder builder) {
+        this.tokenizer = tokenizer;
+        this.builder = builder;
+    }
+
+    public void feed(CharSequence chunk) {
+        if (document != null) {
+            throw new IllegalStateException("Parser has already finished");
+        }
+        tokenizer.feed(chunk);
+        drain();
+    }
+
+    public Document end() {
+        if (document == null) {
+            tokenizer.end();
+            drain();
+            document = builder.finish();
+        }
+        return document;
+    }
+
+    // Root of the partial tree built so far, or null before the first element
+    public Element getRootElement() {
+        return builder.getRoot();
+    }
+
+    private void drain() {
+        tokenizer.tokenize(builder);
+    }
+}
@@ -0,0 +1,176 @@
+package com.tinybrowser.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader over a memory-mapped file. Bytes are decoded only as the caller reads, straight
+ * out of the page cache, so the file is never copied onto the heap as a whole. Latin-1 and
+ * the ASCII runs of UTF-8 are widened directly; everything else goes through a
+ * CharsetDecoder that replaces malformed input. Files larger than one mapping are mapped
+ * window by window.
+ */
+public class MappedFileReader extends Reader {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final boolean latin1;
+    private final boolean asciiCompatible;
+    private final CharsetDecoder decoder;
+    private final CharBuffer spill = CharBuffer.allocate(2);
+    private int pending = -1;
+    private boolean overflow;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private boolean flushed;
+
+    public MappedFileReader(Path path) throws IOException {
+        this(path, StandardCharsets.UTF_8);
+    }
+
+    public MappedFileReader(Path path, Charset charset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII);
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        try {
+            map(0);
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                skipByteOrderMark();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Reader is closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        if (pending >= 0) {
+            cbuf[off] = (char) pending;
+            pending = -1;
+            count = 1;
+        }
+
+        while (count < len) {
+            if (!window.hasRemaining() && !nextWindow()) {
+                break;
+            }
+            int decoded = latin1
+                ? widen(cbuf, off + count, len - count, false)
+                : decode(cbuf, off + count, len - count);
+            if (decoded > 0) {
+                count += decoded;
+            } else if (overflow) {
+                // A surrogate pair with room for only one char: hand out the low half next time
+                spill.clear();
+                decoder.decode(window, spill, isLastWindow());
+                spill.flip();
+                cbuf[off + count++] = spill.get();
+                if (spill.hasRemaining()) {
+                    pending = spill.get();
+                }
+            } else if (!nextWindow()) {
+                // Only a partial multi-byte sequence was left in this window
+                break;
+            }
+        }
+
+        if (count < len && !latin1 && !flushed && isLastWindow() && !window.hasRemaining()) {
+            CharBuffer out = CharBuffer.wrap(cbuf, off + count, len - count);
+            // The decoder may never have seen end of input (or any input, for pure ASCII)
+            decoder.decode(window, out, true);
+            decoder.flush(out);
+            flushed = true;
+            count = out.position() - off;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    private int decode(char[] cbuf, int off, int len) {
+        overflow = false;
+        int count = asciiCompatible ? widen(cbuf, off, len, true) : 0;
+        if (count == len || !window.hasRemaining()) {
+            return count;
+        }
+
+        CharBuffer out = CharBuffer.wrap(cbuf, off + count, len - count);
+        CoderResult result = decoder.decode(window, out, isLastWindow());
+        overflow = result.isOverflow();
+        if (result.isError()) {
+            // Unreachable with REPLACE actions; skip the offending input defensively
+            window.position(window.position() + result.length());
+        }
+        return out.position() - off;
+    }
+
+    // Copies bytes as chars; in ASCII mode stops at the first byte with the high bit set
+    private int widen(char[] cbuf, int off, int len, boolean asciiOnly) {
+        int limit = Math.min(len, window.remaining());
+        int start = window.position();
+        int i = 0;
+        for (; i < limit; i++) {
+            byte b = window.get(start + i);
+            if (asciiOnly && b < 0) {
+                break;
+            }
+            cbuf[off + i] = (char) (b & 0xFF);
+        }
+        window.position(start + i);
+        return i;
+    }
+
+    // Maps the next window, starting at any partial sequence left over from this one
+    private boolean nextWindow() throws IOException {
+        if (isLastWindow()) {
+            return false;
+        }
+        map(windowStart + window.position());
+        return true;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        long size = Math.min(WINDOW_SIZE, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+
+    private boolean isLastWindow() {
+        return windowStart + window.capacity() >= fileSize;
+    }
+
+    private void skipByteOrderMark() {
+        if (window.remaining() >= 3 && window.get(0) == (byte) 0xEF
+                && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF) {
+            window.position(3);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,169 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Atoms;
+import com.tinybrowser.dom.Element;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stack of open elements for tree construction. Besides the elements themselves it keeps,
+ * for every tag id, the position of the topmost open element with that id, and for every
+ * kind of scope, the position of the topmost element that bounds it. Each slot remembers
+ * the previous holder of both, so push and pop restore them in O(1) and "is X in scope"
+ * is a comparison of two positions instead of a walk down the stack.
+ *
+ * Known tags use their Atoms id; other names get ids past Atoms.TAG_COUNT on first use.
+ */
+final class OpenElementStack {
+    static final int DEFAULT_SCOPE = 0;
+    static final int LIST_ITEM_SCOPE = 1;
+    static final int DEFINITION_SCOPE = 2;
+    static final int BUTTON_SCOPE = 3;
+    static final int TABLE_SCOPE = 4;
+    private static final int SCOPES = 5;
+
+    private static final int NONE = -1;
+
+    // Elements that end each kind of scope; a target below one of these is out of scope
+    private static final BitSet[] BOUNDARIES = new BitSet[SCOPES];
+
+    static {
+        String[] common = {"html", "table", "td", "th", "caption", "object", "template"};
+        BOUNDARIES[DEFAULT_SCOPE] = tagSet(common);
+        BOUNDARIES[LIST_ITEM_SCOPE] = tagSet(common, "ol", "ul");
+        BOUNDARIES[DEFINITION_SCOPE] = tagSet(common, "dl");
+        BOUNDARIES[BUTTON_SCOPE] = tagSet(common, "button");
+        BOUNDARIES[TABLE_SCOPE] = tagSet(new String[] {"html", "table", "template"});
+    }
+
+    private Element[] elements = new Element[32];
+    private int[] ids = new int[32];
+    private int[] previousSame = new int[32];
+    private int[][] previousBoundary = new int[SCOPES][32];
+    private int size;
+
+    private int[] top = new int[Atoms.TAG_COUNT + 16];
+    private final int[] boundaryTop = new int[SCOPES];
+    private final Map<String, Integer> extraIds = new HashMap<>();
+
+    OpenElementStack() {
+        Arrays.fill(top, NONE);
+        Arrays.fill(boundaryTop, NONE);
+    }
+
+    static BitSet tagSet(String[] names, String... more) {
+        BitSet set = new BitSet(Atoms.TAG_COUNT);
+        for (String name : names) {
+            set.set(requireTagId(name));
+        }
+        for (String name : more) {
+            set.set(requireTagId(name));
+        }
+        return set;
+    }
+
+    static int requireTagId(String name) {
+        int id = Atoms.tagId(name);
+        if (id == Atoms.UNKNOWN_TAG) {
+            throw new IllegalStateException("No tag id for " + name);
+        }
+        return id;
+    }
+
+    // Stack id for an element name, assigning one to unknown names. Keyed by equals: names
+    // past the Atoms limit are not canonical instances.
+    int idOf(String name, int tagId) {
+        if (tagId != Atoms.UNKNOWN_TAG) {
+            return tagId;
+        }
+        Integer id = extraIds.get(name);
+        if (id == null) {
+            id = Atoms.TAG_COUNT + extraIds.size();
+            extraIds.put(name, id);
+            if (id >= top.length) {
+                int length = top.length;
+                top = Arrays.copyOf(top, length * 2);
+                Arrays.fill(top, length, top.length, NONE);
+            }
+        }
+        return id;
+    }
+
+    // Like idOf, but an unknown name that was never pushed yields NONE
+    int existingIdOf(String name) {
+        int tagId = Atoms.tagId(name);
+        if (tagId != Atoms.UNKNOWN_TAG) {
+            return tagId;
+        }
+        Integer id = extraIds.get(name);
+        return id != null ? id : NONE;
+    }
+
+    void push(Element element, int id) {
+        if (size == elements.length) {
+            int capacity = size * 2;
+            elements = Arrays.copyOf(elements, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            previousSame = Arrays.copyOf(previousSame, capacity);
+            for (int scope = 0; scope < SCOPES; scope++) {
+                previousBoundary[scope] = Arrays.copyOf(previousBoundary[scope], capacity);
+            }
+        }
+        int slot = size++;
+        elements[slot] = element;
+        ids[slot] = id;
+        previousSame[slot] = top[id];
+        top[id] = slot;
+        for (int scope = 0; scope < SCOPES; scope++) {
+            previousBoundary[scope][slot] = boundaryTop[scope];
+            if (BOUNDARIES[scope].get(id)) {
+                boundaryTop[scope] = slot;
+            }
+        }
+    }
+
+    Element pop() {
+        int slot = --size;
+        Element element = elements[slot];
+        elements[slot] = null;
+        top[ids[slot]] = previousSame[slot];
+        for (int scope = 0; scope < SCOPES; scope++) {
+            boundaryTop[scope] = previousBoundary[scope][slot];
+        }
+        return element;
+    }
+
+    // Current node, or null when nothing is open
+    Element current() {
+        return size == 0 ? null : elements[size - 1];
+    }
+
+    Element elementAt(int position) {
+        return elements[position];
+    }
+
+    int currentId() {
+        return size == 0 ? NONE : ids[size - 1];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Position of the topmost open element with this id, or NONE
+    int position(int id) {
+        return id < 0 ? NONE : top[id];
+    }
+
+    boolean inScope(int id, int scope) {
+        int position = position(id);
+        return position != NONE && position >= boundaryTop[scope];
+    }
+}
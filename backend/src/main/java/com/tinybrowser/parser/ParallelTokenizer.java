@@ -0,0 +1,111 @@
+package com.tinybrowser.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Tokenizes a large String on several cores. The input is cut at '<' characters, each
+ * segment is tokenized on the pool as if a token started there, and the recorded streams
+ * are stitched back together in order.
+ *
+ * A cut is only a guess: it may fall inside a comment, an attribute value, a script body
+ * or text that merely contains '<'. The previous segment's stream tells us where the real
+ * token boundary is, because it keeps going past its own end until a token finishes, and
+ * which tokenizer state it ends in. If either differs from the guess, the segment is
+ * re-tokenized sequentially from the real boundary until it reaches a token the
+ * speculative stream also scanned from the same offset in the same state; from there on
+ * the speculative tokens are identical and are used as-is.
+ */
+final class ParallelTokenizer {
+    static final int MIN_SEGMENT_SIZE = 1 << 18;
+
+    private ParallelTokenizer() {
+    }
+
+    static void tokenize(String html, boolean skipWhitespaceText, boolean lazyAttributes, ForkJoinPool pool,
+                         HtmlTokenHandler handler) {
+        int[] bounds = boundaries(html, pool.getParallelism());
+
+        List<ForkJoinTask<TokenBuffer>> segments = new ArrayList<>();
+        for (int k = 0; k + 1 < bounds.length; k++) {
+            int start = bounds[k];
+            int stop = k + 2 < bounds.length ? bounds[k + 1] : Integer.MAX_VALUE;
+            segments.add(pool.submit(() -> record(html, skipWhitespaceText, lazyAttributes, start, stop)));
+        }
+
+        HtmlTokenizer replay = new HtmlTokenizer(html, skipWhitespaceText, 0, 0);
+        int expected = 0;
+        int expectedState = HtmlTokenizer.DATA_STATE;
+        for (int k = 0; k < segments.size(); k++) {
+            TokenBuffer segment = segments.get(k).join();
+            int from = 0;
+
+            if (bounds[k] != expected || expectedState != HtmlTokenizer.DATA_STATE) {
+                // The previous segment's last token ran past this cut, or left raw text open;
+                // re-tokenize until the real stream lines up with a token the speculative
+                // stream also scanned from the same offset in the same state
+                int stop = k + 2 < bounds.length ? bounds[k + 1] : Integer.MAX_VALUE;
+                HtmlTokenizer repair = new HtmlTokenizer(html, skipWhitespaceText, expected, stop);
+                repair.setLazyAttributes(lazyAttributes);
+                repair.setState(expectedState);
+                handler.setTokenizer(repair);
+                from = -1;
+                while (repair.advance() != TokenType.EOF) {
+                    from = segment.indexOf(repair.tokenStart(), repair.tokenState());
+                    if (from >= 0) {
+                        break;
+                    }
+                    repair.dispatch(handler);
+                }
+                if (from < 0) {
+                    expected = repair.getPosition();
+                    expectedState = repair.state();
+                    continue;
+                }
+            }
+
+            handler.setTokenizer(replay);
+            for (int i = from; i < segment.size(); i++) {
+                replay.load(segment, i);
+                replay.dispatch(handler);
+            }
+            expected = segment.end();
+            expectedState = segment.endState();
+        }
+    }
+
+    private static TokenBuffer record(String html, boolean skipWhitespaceText, boolean lazyAttributes,
+                                      int start, int stop) {
+        HtmlTokenizer tokenizer = new HtmlTokenizer(html, skipWhitespaceText, start, stop);
+        tokenizer.setLazyAttributes(lazyAttributes);
+        TokenBuffer buffer = new TokenBuffer();
+        while (tokenizer.advance() != TokenType.EOF) {
+            buffer.record(tokenizer);
+        }
+        buffer.setEnd(tokenizer.getPosition(), tokenizer.state());
+        return buffer;
+    }
+
+    // Segment starts, each at a '<', followed by the input length
+    private static int[] boundaries(String html, int parallelism) {
+        int segments = Math.max(1, Math.min(parallelism * 4, html.length() / MIN_SEGMENT_SIZE));
+        int size = html.length() / segments;
+
+        int[] bounds = new int[segments + 1];
+        int count = 1;
+        for (int k = 1; k < segments; k++) {
+            int cut = html.indexOf('<', k * size);
+            if (cut < 0) {
+                break;
+            }
+            if (cut > bounds[count - 1]) {
+                bounds[count++] = cut;
+            }
+        }
+        bounds[count++] = html.length();
+        return Arrays.copyOf(bounds, count);
+    }
+}
@@ -0,0 +1,41 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Document;
+
+import java.nio.file.Path;
+
+// Outcome of parsing one file in a batch: either a document or the error that stopped it
+public final class ParseResult {
+    private final Path path;
+    private final Document document;
+    private final Throwable error;
+
+    ParseResult(Path path, Document document, Throwable error) {
+        this.path = path;
+        this.document = document;
+        this.error = error;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Null if parsing failed
+    public Document getDocument() {
+        return document;
+    }
+
+    // Null if parsing succeeded
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseResult{path=" + path + (error == null ? ", ok" : ", error=" + error) + "}";
+    }
+}
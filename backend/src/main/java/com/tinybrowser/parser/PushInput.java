@@ -0,0 +1,145 @@
+package com.tinybrowser.parser;
+
+/**
+ * Input that grows as chunks are fed in. Reading past the data fed so far marks the input
+ * as starved, which tells the tokenizer the current token may not be complete yet. A
+ * starved token can only complete once a '<' or '>' arrives (or the input ends), so
+ * resume() holds off retrying until one of those shows up. Raw-text bodies and comments
+ * are full of those characters, so for them the tokenizer narrows the wait to the real
+ * terminator with waitFor().
+ */
+final class PushInput extends HtmlInput {
+    private char[] buffer = new char[1024];
+    private int base;
+    private int end;
+    private int released;
+    private boolean ended;
+    private boolean starved;
+    private int waitingFrom = -1;
+    // Lower-case text the starved token is waiting for, or null for any '<' or '>'
+    private String terminator;
+    private int after;
+
+    void append(CharSequence chunk) {
+        if (ended) {
+            throw new IllegalStateException("Input has already ended");
+        }
+        int length = chunk.length();
+        if (end + length - base > buffer.length) {
+            makeRoom(length);
+        }
+        int offset = end - base;
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = chunk.charAt(i);
+        }
+        end += length;
+    }
+
+    void end() {
+        ended = true;
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    // Called at the start of each token; false if a retry could not succeed yet
+    boolean resume() {
+        starved = false;
+        if (waitingFrom < 0 || ended) {
+            waitingFrom = -1;
+            return true;
+        }
+        if (terminator != null) {
+            // Each position is checked once, as soon as enough has arrived to decide it
+            int need = terminator.length() + after;
+            for (; waitingFrom + need <= end; waitingFrom++) {
+                if (terminatorAt(waitingFrom)) {
+                    waitingFrom = -1;
+                    terminator = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (; waitingFrom < end; waitingFrom++) {
+            char ch = buffer[waitingFrom - base];
+            if (ch == '<' || ch == '>') {
+                waitingFrom = -1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // True if the last token ran into the end of the data fed so far
+    boolean starved() {
+        if (starved) {
+            waitingFrom = end;
+            terminator = null;
+        }
+        return starved;
+    }
+
+    // Narrows the wait of a starved token to the terminator (matched ignoring ASCII case)
+    // followed by at least the given number of characters. Everything fed so far has been
+    // scanned, so only a terminator overlapping the end of it can still be missing.
+    void waitFor(String terminator, int after, int tokenStart) {
+        this.terminator = terminator;
+        this.after = after;
+        waitingFrom = Math.max(tokenStart, end - terminator.length() - after + 1);
+    }
+
+    private boolean terminatorAt(int index) {
+        int offset = index - base;
+        for (int i = 0; i < terminator.length(); i++) {
+            char ch = buffer[offset + i];
+            if (ch >= 'A' && ch <= 'Z') {
+                ch += 'a' - 'A';
+            }
+            if (ch != terminator.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    boolean has(int index) {
+        if (index < end) {
+            return true;
+        }
+        if (!ended) {
+            starved = true;
+        }
+        return false;
+    }
+
+    @Override
+    char charAt(int index) {
+        return buffer[index - base];
+    }
+
+    @Override
+    String substring(int start, int end) {
+        return new String(buffer, start - base, end - start);
+    }
+
+    @Override
+    void release(int index) {
+        released = Math.max(released, index);
+    }
+
+    private void makeRoom(int length) {
+        // Drop everything before the current token, then grow if that is not enough
+        int keep = end - released;
+        int capacity = buffer.length;
+        while (keep + length > capacity) {
+            capacity *= 2;
+        }
+        char[] target = capacity == buffer.length ? buffer : new char[capacity];
+        System.arraycopy(buffer, released - base, target, 0, keep);
+        buffer = target;
+        base = released;
+    }
+}
@@ -0,0 +1,123 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.util.CharScanner;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Pulls characters from a Reader through a ring buffer. Positions stay absolute, so the
+ * tokenizer addresses the stream exactly as it would a String. Everything before the start
+ * of the current token is released and overwritten by the next refill; the buffer only grows
+ * when a single token is larger than its capacity.
+ */
+final class ReaderInput extends HtmlInput {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private final Reader reader;
+    private char[] buffer;
+    private int mask;
+    private int start;
+    private int end;
+    private int released;
+    private boolean eof;
+
+    ReaderInput(Reader reader, int bufferSize) {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
+        }
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Buffer size must be at least " + MIN_BUFFER_SIZE);
+        }
+        this.reader = reader;
+        this.buffer = new char[Integer.highestOneBit(bufferSize - 1) << 1];
+        this.mask = buffer.length - 1;
+    }
+
+    @Override
+    boolean has(int index) {
+        while (index >= end) {
+            if (eof || !fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    char charAt(int index) {
+        return buffer[index & mask];
+    }
+
+    @Override
+    int find(char target, int from) {
+        int index = from;
+        while (has(index)) {
+            // Scan the contiguous run of buffered characters starting at index
+            int offset = index & mask;
+            int length = Math.min(end - index, buffer.length - offset);
+            int found = CharScanner.indexOf(buffer, offset, offset + length, target);
+            if (found >= 0) {
+                return index + (found - offset);
+            }
+            index += length;
+        }
+        return index;
+    }
+
+    @Override
+    String substring(int from, int to) {
+        int length = to - from;
+        int offset = from & mask;
+        if (offset + length <= buffer.length) {
+            return new String(buffer, offset, length);
+        }
+        int head = buffer.length - offset;
+        return new StringBuilder(length)
+            .append(buffer, offset, head)
+            .append(buffer, 0, length - head)
+            .toString();
+    }
+
+    @Override
+    void release(int index) {
+        released = Math.max(released, index);
+    }
+
+    private boolean fill() {
+        start = Math.min(end, Math.max(start, released));
+        if (end - start == buffer.length) {
+            grow();
+        }
+
+        int offset = end & mask;
+        int free = buffer.length - (end - start);
+        int length = Math.min(free, buffer.length - offset);
+
+        int read;
+        try {
+            read = reader.read(buffer, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        end += read;
+        return true;
+    }
+
+    private void grow() {
+        char[] larger = new char[buffer.length * 2];
+        int largerMask = larger.length - 1;
+        for (int i = start; i < end; i++) {
+            larger[i & largerMask] = buffer[i & mask];
+        }
+        buffer = larger;
+        mask = largerMask;
+    }
+}
@@ -0,0 +1,127 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Document;
+import com.tinybrowser.dom.Element;
+import com.tinybrowser.dom.Node;
+import com.tinybrowser.dom.TreeWalker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies a text edit to a parsed document by re-tokenizing only the content of the
+ * smallest element that encloses it. Candidates are elements closed by their own end tag
+ * whose content range covers the edit, so their tags are untouched by it; raw text
+ * elements are skipped since their content is not markup.
+ *
+ * The new content is built under placeholders for the element and its ancestors. If it
+ * would close anything outside itself, leave open something the end tag would not close,
+ * or run a token past the end tag, the element's structure depends on the edit and the
+ * whole document is parsed again instead.
+ */
+final class Reparser {
+    private Reparser() {
+    }
+
+    static Document reparse(HtmlParser parser, Document document, String source,
+                            int offset, int removedLength, String inserted) {
+        if (document == null || source == null) {
+            throw new IllegalArgumentException("document and source must not be null");
+        }
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length()) {
+            throw new IllegalArgumentException("Edit is outside the source: offset " + offset
+                + ", removed " + removedLength + ", length " + source.length());
+        }
+        String text = inserted != null ? inserted : "";
+        String updated = source.substring(0, offset) + text + source.substring(offset + removedLength);
+        int editEnd = offset + removedLength;
+        int delta = text.length() - removedLength;
+
+        Element target = findTarget(document.getRootElement(), offset, editEnd);
+        if (target == null) {
+            return parser.parseDocument(updated);
+        }
+
+        List<Element> chain = new ArrayList<>();
+        for (Node node = target; node != null; node = node.getParent()) {
+            chain.add((Element) node);
+        }
+        Collections.reverse(chain);
+
+        int contentEnd = target.getContentEnd() + delta;
+        TreeBuilder builder = new TreeBuilder(parser.isSpanMode());
+        Element content = builder.openFragment(chain);
+        HtmlTokenizer tokenizer = new HtmlTokenizer(updated, true, target.getContentStart(), contentEnd);
+        tokenizer.setLazyAttributes(parser.isLazyAttributes());
+        tokenizer.tokenize(builder);
+        if (!builder.closeFragment() || tokenizer.getPosition() != contentEnd
+                || tokenizer.state() != HtmlTokenizer.DATA_STATE) {
+            return parser.parseDocument(updated);
+        }
+
+        shift(document.getRootElement(), target, offset, editEnd, delta);
+        target.setContentRange(target.getContentStart(), contentEnd);
+        target.setSourceRange(target.getSourceStart(), target.getSourceEnd() + delta);
+
+        List<Node> children = new ArrayList<>(content.getChildren());
+        content.removeAllChildren();
+        target.removeAllChildren();
+        for (Node child : children) {
+            target.appendChild(child);
+        }
+        return document;
+    }
+
+    // Deepest eligible element whose content covers [offset, editEnd), or null
+    private static Element findTarget(Element root, int offset, int editEnd) {
+        Element best = null;
+        Element element = root;
+        while (element != null) {
+            if (element.getContentEnd() >= 0 && element.getContentStart() <= offset
+                    && editEnd <= element.getContentEnd()
+                    && !HtmlTokenizer.isRawTextElement(element.getTagName())) {
+                best = element;
+            }
+            Element next = null;
+            for (Node child : element.getChildren()) {
+                if (child instanceof Element && child.getSourceStart() >= 0
+                        && child.getSourceStart() <= offset && editEnd <= child.getSourceEnd()) {
+                    next = (Element) child;
+                    break;
+                }
+            }
+            element = next;
+        }
+        return best;
+    }
+
+    // Moves every offset after the edit by delta. Offsets equal to the edit start belong
+    // before an insertion when they start a range and after it when they end one. The
+    // target's own ranges and old content are handled by the caller, and subtrees that end
+    // before the edit are left alone.
+    private static void shift(Element root, Element target, int offset, int editEnd, int delta) {
+        TreeWalker walker = new TreeWalker(root);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if (node == target || (node.getSourceEnd() >= 0 && node.getSourceEnd() < offset)) {
+                walker.skipChildren();
+                continue;
+            }
+            node.setSourceRange(shiftStart(node.getSourceStart(), offset, editEnd, delta),
+                shiftEnd(node.getSourceEnd(), editEnd, delta));
+            if (node instanceof Element element) {
+                element.setContentRange(shiftStart(element.getContentStart(), offset, editEnd, delta),
+                    shiftEnd(element.getContentEnd(), editEnd, delta));
+            }
+        }
+    }
+
+    private static int shiftStart(int position, int offset, int editEnd, int delta) {
+        return position > offset && position >= editEnd ? position + delta : position;
+    }
+
+    private static int shiftEnd(int position, int editEnd, int delta) {
+        return position >= editEnd ? position + delta : position;
+    }
+}
@@ -0,0 +1,53 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Atoms;
+import com.tinybrowser.dom.TextSpan;
+
+final class StringInput extends HtmlInput {
+    private final String input;
+
+    StringInput(String input) {
+        this.input = input;
+    }
+
+    String source() {
+        return input;
+    }
+
+    @Override
+    boolean has(int index) {
+        return index < input.length();
+    }
+
+    @Override
+    char charAt(int index) {
+        return input.charAt(index);
+    }
+
+    @Override
+    int find(char target, int from) {
+        // String.indexOf is a SIMD intrinsic in HotSpot
+        int index = input.indexOf(target, from);
+        return index >= 0 ? index : Math.max(from, input.length());
+    }
+
+    @Override
+    boolean contains(char target, int start, int end) {
+        return input.indexOf(target, start, end) >= 0;
+    }
+
+    @Override
+    String substring(int start, int end) {
+        return input.substring(start, end);
+    }
+
+    @Override
+    CharSequence span(int start, int end) {
+        return new TextSpan(input, start, end - start);
+    }
+
+    @Override
+    String atom(int start, int end) {
+        return Atoms.intern(input, start, end);
+    }
+}
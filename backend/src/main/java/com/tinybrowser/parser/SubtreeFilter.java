@@ -0,0 +1,15 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Element;
+
+// Chooses the elements whose subtrees are handed out one by one in streaming mode. It is
+// asked at the start tag, so only the tag name and attributes are known; depth counts the
+// open ancestors (the root element is at depth 0, body usually at 1).
+@FunctionalInterface
+public interface SubtreeFilter {
+    boolean matches(Element element, int depth);
+
+    static SubtreeFilter atDepth(int depth) {
+        return (element, elementDepth) -> elementDepth == depth;
+    }
+}
@@ -0,0 +1,49 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.AttributeLoader;
+import com.tinybrowser.dom.Atoms;
+
+// Attributes of the tag a tokenizer is positioned on. One instance per tokenizer is reused
+// for every tag, so nothing is allocated unless a name or value is read.
+public final class TagAttributes {
+    private final HtmlTokenizer tokenizer;
+
+    TagAttributes(HtmlTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    public int size() {
+        return tokenizer.attrCount();
+    }
+
+    // Canonical lower-case name (see Atoms)
+    public String name(int index) {
+        return tokenizer.attrName(index);
+    }
+
+    public String value(int index) {
+        return tokenizer.attrValue(index);
+    }
+
+    public CharSequence valueSpan(int index) {
+        return tokenizer.attrValueSpan(index);
+    }
+
+    // Value of the first attribute with this name, or null
+    public String get(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Attribute name cannot be null");
+        }
+        String atom = Atoms.intern(name);
+        for (int i = 0; i < size(); i++) {
+            if (tokenizer.attrName(i).equals(atom)) {
+                return tokenizer.attrValue(i);
+            }
+        }
+        return null;
+    }
+
+    AttributeLoader deferred(boolean spanMode) {
+        return tokenizer.deferredAttributes(spanMode);
+    }
+}
@@ -0,0 +1,112 @@
+package com.tinybrowser.parser;
+
+import java.util.Arrays;
+
+// Compact recording of a token stream as offsets into the input, so a stream can be
+// produced on one thread and replayed through a tokenizer cursor on another
+final class TokenBuffer {
+    static final int TYPE = 0;
+    static final int TOKEN_START = 1;
+    static final int TOKEN_END = 2;
+    static final int NAME_START = 3;
+    static final int NAME_END = 4;
+    static final int CONTENT_START = 5;
+    static final int CONTENT_END = 6;
+    static final int ATTR_INDEX = 7;
+    static final int ATTR_COUNT = 8;
+    static final int ATTRS_START = 9;
+    static final int ATTRS_END = 10;
+    static final int DEFERRED = 11;
+    static final int STATE = 12;
+    static final int FIELDS = 13;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private int[] tokens = new int[FIELDS * 64];
+    private int[] attrs = new int[64];
+    private int count;
+    private int attrLength;
+    private int end;
+    private int endState;
+
+    void record(HtmlTokenizer tokenizer) {
+        if ((count + 1) * FIELDS > tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        }
+        int attrCount = tokenizer.attrCount();
+        if (attrLength + attrCount * 4 > attrs.length) {
+            attrs = Arrays.copyOf(attrs, Math.max(attrs.length * 2, attrLength + attrCount * 4));
+        }
+
+        int base = count * FIELDS;
+        tokens[base + TYPE] = tokenizer.type().ordinal();
+        tokens[base + TOKEN_START] = tokenizer.tokenStart();
+        tokens[base + TOKEN_END] = tokenizer.tokenEnd();
+        tokens[base + NAME_START] = tokenizer.nameStart();
+        tokens[base + NAME_END] = tokenizer.nameEnd();
+        tokens[base + CONTENT_START] = tokenizer.contentStart();
+        tokens[base + CONTENT_END] = tokenizer.contentEnd();
+        tokens[base + ATTR_INDEX] = attrLength;
+        tokens[base + ATTR_COUNT] = attrCount;
+        tokens[base + ATTRS_START] = tokenizer.attributesStart();
+        tokens[base + ATTRS_END] = tokenizer.attributesEnd();
+        tokens[base + DEFERRED] = tokenizer.hasDeferredAttributes() ? 1 : 0;
+        tokens[base + STATE] = tokenizer.tokenState();
+        for (int i = 0; i < attrCount; i++) {
+            attrs[attrLength++] = tokenizer.attrNameStart(i);
+            attrs[attrLength++] = tokenizer.attrNameEnd(i);
+            attrs[attrLength++] = tokenizer.attrValueStart(i);
+            attrs[attrLength++] = tokenizer.attrValueEnd(i);
+        }
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int get(int index, int field) {
+        return tokens[index * FIELDS + field];
+    }
+
+    TokenType type(int index) {
+        return TYPES[get(index, TYPE)];
+    }
+
+    int[] attrs() {
+        return attrs;
+    }
+
+    // Position where recording stopped: the start of the first token not recorded
+    int end() {
+        return end;
+    }
+
+    // Tokenizer state at end()
+    int endState() {
+        return endState;
+    }
+
+    void setEnd(int end, int endState) {
+        this.end = end;
+        this.endState = endState;
+    }
+
+    // Index of the token scanned from offset in the given tokenizer state, or -1
+    int indexOf(int offset, int state) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = get(mid, TOKEN_START);
+            if (start < offset) {
+                low = mid + 1;
+            } else if (start > offset) {
+                high = mid - 1;
+            } else {
+                return get(mid, STATE) == state ? mid : -1;
+            }
+        }
+        return -1;
+    }
+}
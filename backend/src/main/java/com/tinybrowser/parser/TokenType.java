@@ -7,5 +7,6 @@ public enum TokenType {
     SELF_CLOSING_TAG,
     TEXT,
     COMMENT,
+    NEEDS_INPUT, // incremental tokenizer has consumed everything fed so far
     EOF
 }
@@ -0,0 +1,327 @@
+package com.tinybrowser.parser;
+
+import com.tinybrowser.dom.Atoms;
+import com.tinybrowser.dom.Document;
+import com.tinybrowser.dom.DomArena;
+import com.tinybrowser.dom.Element;
+import com.tinybrowser.dom.TextNode;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Builds the DOM as a token handler, so whole-document, incremental and parallel parsing
+// all share the tokenizer's push API
+class TreeBuilder implements HtmlTokenHandler {
+    private static final int P = OpenElementStack.requireTagId("p");
+    private static final int LI = OpenElementStack.requireTagId("li");
+    private static final int DD = OpenElementStack.requireTagId("dd");
+    private static final int DT = OpenElementStack.requireTagId("dt");
+    private static final int OPTION = OpenElementStack.requireTagId("option");
+    private static final int OPTGROUP = OpenElementStack.requireTagId("optgroup");
+    private static final int TABLE = OpenElementStack.requireTagId("table");
+    private static final int TR = OpenElementStack.requireTagId("tr");
+    private static final int TD = OpenElementStack.requireTagId("td");
+    private static final int TH = OpenElementStack.requireTagId("th");
+    private static final int THEAD = OpenElementStack.requireTagId("thead");
+    private static final int TBODY = OpenElementStack.requireTagId("tbody");
+    private static final int TFOOT = OpenElementStack.requireTagId("tfoot");
+
+    private static final BitSet VOID_ELEMENTS = OpenElementStack.tagSet(new String[] {
+        "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param",
+        "source", "track", "wbr"
+    });
+    private static final BitSet CLOSES_PARAGRAPH = OpenElementStack.tagSet(new String[] {
+        "address", "article", "aside", "blockquote", "details", "dialog", "div", "dl", "fieldset",
+        "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header",
+        "hgroup", "hr", "main", "menu", "nav", "ol", "p", "pre", "search", "section", "summary",
+        "table", "ul", "li", "dd", "dt", "xmp", "plaintext"
+    });
+    private static final BitSet HEADINGS = OpenElementStack.tagSet(new String[] {
+        "h1", "h2", "h3", "h4", "h5", "h6"
+    });
+    private static final BitSet TABLE_SECTIONS = OpenElementStack.tagSet(new String[] {
+        "thead", "tbody", "tfoot"
+    });
+
+    private final boolean spanMode;
+    private final OpenElementStack openElements = new OpenElementStack();
+    private Element root;
+    private Element currentParent;
+    private String doctype = "";
+    private SubtreeFilter subtreeFilter;
+    private Consumer<Element> subtreeHandler;
+    private Element streamed;
+    private DomArena arena;
+    private HtmlTokenizer tokenizer;
+    private int fragmentDepth;
+    private boolean fragmentEscaped;
+
+    TreeBuilder(boolean spanMode) {
+        this.spanMode = spanMode;
+    }
+
+    // Compact mode: nodes are allocated in the arena instead of as separate objects
+    void useArena(DomArena arena) {
+        this.arena = arena;
+    }
+
+    // Streaming mode: each subtree chosen by the filter goes to the handler once its end
+    // tag is seen, and is then detached so it can be collected
+    void streamSubtrees(SubtreeFilter filter, Consumer<Element> handler) {
+        this.subtreeFilter = filter;
+        this.subtreeHandler = handler;
+    }
+
+    // Fragment mode, for reparsing an element's content: the chain of open elements (root
+    // first) is stood in for by empty placeholders, so nothing built can reach the real
+    // tree. Returns the placeholder of the innermost element.
+    Element openFragment(List<Element> openChain) {
+        for (Element element : openChain) {
+            Element placeholder = new Element(element.getTagName());
+            if (currentParent != null) {
+                currentParent.appendChild(placeholder);
+            } else {
+                root = placeholder;
+            }
+            openElements.push(placeholder, openElements.idOf(placeholder.getTagName(), placeholder.getTagId()));
+            currentParent = placeholder;
+        }
+        fragmentDepth = openChain.size();
+        return currentParent;
+    }
+
+    // Ends the fragment as the innermost element's end tag would. False when the fragment
+    // closed something outside itself, or left open something that changes what that end
+    // tag closes.
+    boolean closeFragment() {
+        if (fragmentEscaped) {
+            return false;
+        }
+        int innermost = fragmentDepth - 1;
+        int id = openElements.existingIdOf(openElements.elementAt(innermost).getTagName());
+        if (openElements.position(id) != innermost || !openElements.inScope(id, endTagScope(id))) {
+            return false;
+        }
+        while (openElements.size() > fragmentDepth) {
+            popElement();
+        }
+        return true;
+    }
+
+    @Override
+    public void setTokenizer(HtmlTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    @Override
+    public void doctype(CharSequence content) {
+        doctype = content.toString();
+    }
+
+    @Override
+    public void startTag(String name, TagAttributes attributes, boolean selfClosing) {
+        int tagId = Atoms.tagId(name);
+        closeImpliedElements(tagId);
+
+        Element element = createElement(name, attributes);
+        int depth = openElements.size();
+        boolean empty = selfClosing || VOID_ELEMENTS.get(tagId);
+        element.setSourceRange(tokenStart(), empty ? tokenEnd() : -1);
+        if (!empty) {
+            element.setContentRange(tokenEnd(), -1);
+        }
+
+        if (currentParent != null) {
+            currentParent.appendChild(element);
+        } else if (root == null) {
+            root = element;
+        }
+
+        if (streamed == null && subtreeFilter != null && subtreeFilter.matches(element, depth)) {
+            if (empty) {
+                completeSubtree(element);
+            } else {
+                streamed = element;
+            }
+        }
+
+        if (!empty) {
+            openElements.push(element, openElements.idOf(element.getTagName(), tagId));
+            currentParent = element;
+        }
+    }
+
+    @Override
+    public void endTag(String name) {
+        int id = openElements.existingIdOf(name);
+        // A stray end tag for something that is not open in scope is ignored
+        if (id >= 0 && openElements.inScope(id, endTagScope(id))) {
+            closeThrough(id, true);
+        }
+    }
+
+    // Start tags that end open elements without an end tag of their own, e.g. <li> ends
+    // the previous <li> and a block-level tag ends an open <p>
+    private void closeImpliedElements(int tagId) {
+        if (CLOSES_PARAGRAPH.get(tagId) && openElements.inScope(P, OpenElementStack.BUTTON_SCOPE)) {
+            closeThrough(P);
+        }
+
+        if (tagId == LI) {
+            if (openElements.inScope(LI, OpenElementStack.LIST_ITEM_SCOPE)) {
+                closeThrough(LI);
+            }
+        } else if (tagId == DD || tagId == DT) {
+            closeNearest(DD, DT, OpenElementStack.DEFINITION_SCOPE);
+        } else if (HEADINGS.get(tagId)) {
+            if (!openElements.isEmpty() && HEADINGS.get(openElements.currentId())) {
+                popElement();
+            }
+        } else if (tagId == OPTION || tagId == OPTGROUP) {
+            if (openElements.currentId() == OPTION) {
+                popElement();
+            }
+            if (tagId == OPTGROUP && openElements.currentId() == OPTGROUP) {
+                popElement();
+            }
+        } else if (tagId == TD || tagId == TH) {
+            closeNearest(TD, TH, OpenElementStack.TABLE_SCOPE);
+        } else if (tagId == TR) {
+            closeNearest(TD, TH, OpenElementStack.TABLE_SCOPE);
+            if (openElements.inScope(TR, OpenElementStack.TABLE_SCOPE)) {
+                closeThrough(TR);
+            }
+        } else if (TABLE_SECTIONS.get(tagId)) {
+            closeNearest(TD, TH, OpenElementStack.TABLE_SCOPE);
+            if (openElements.inScope(TR, OpenElementStack.TABLE_SCOPE)) {
+                closeThrough(TR);
+            }
+            int section = openElements.position(THEAD) > openElements.position(TBODY) ? THEAD : TBODY;
+            closeNearest(section, TFOOT, OpenElementStack.TABLE_SCOPE);
+        }
+    }
+
+    private static int endTagScope(int id) {
+        if (id == P) {
+            return OpenElementStack.BUTTON_SCOPE;
+        }
+        if (id == LI) {
+            return OpenElementStack.LIST_ITEM_SCOPE;
+        }
+        if (id == DD || id == DT) {
+            return OpenElementStack.DEFINITION_SCOPE;
+        }
+        if (id == TABLE || id == TR || id == TD || id == TH || TABLE_SECTIONS.get(id)) {
+            return OpenElementStack.TABLE_SCOPE;
+        }
+        return OpenElementStack.DEFAULT_SCOPE;
+    }
+
+    // Closes whichever of the two is open nearer the top, if it is in scope
+    private void closeNearest(int first, int second, int scope) {
+        int id = openElements.position(first) > openElements.position(second) ? first : second;
+        if (openElements.inScope(id, scope)) {
+            closeThrough(id);
+        }
+    }
+
+    // Pops elements up to and including the topmost one with this id, which must be open
+    private void closeThrough(int id) {
+        closeThrough(id, false);
+    }
+
+    // explicit: the current token is the end tag of the element being closed
+    private void closeThrough(int id, boolean explicit) {
+        while (openElements.currentId() != id) {
+            popElement();
+        }
+        popElement(explicit);
+    }
+
+    private void popElement() {
+        popElement(false);
+    }
+
+    private void popElement(boolean explicit) {
+        if (openElements.size() <= fragmentDepth) {
+            fragmentEscaped = true;
+        }
+        Element closed = openElements.pop();
+        currentParent = openElements.current();
+        if (explicit) {
+            closed.setContentRange(closed.getContentStart(), tokenStart());
+            closed.setSourceRange(closed.getSourceStart(), tokenEnd());
+        } else {
+            closed.setSourceRange(closed.getSourceStart(), tokenStart());
+        }
+        if (closed == streamed) {
+            streamed = null;
+            completeSubtree(closed);
+        }
+    }
+
+    @Override
+    public void text(CharSequence text) {
+        if (currentParent != null) {
+            TextNode node = arena != null
+                ? arena.createTextNode(text)
+                : new TextNode(spanMode ? text : text.toString());
+            node.setSourceRange(tokenStart(), tokenEnd());
+            currentParent.appendChild(node);
+        }
+    }
+
+    private int tokenStart() {
+        return tokenizer != null ? tokenizer.tokenStart() : -1;
+    }
+
+    private int tokenEnd() {
+        return tokenizer != null ? tokenizer.tokenEnd() : -1;
+    }
+
+    // Comments are not part of the tree for now
+
+    // Root of the tree built so far, or null before the first element
+    Element getRoot() {
+        return root;
+    }
+
+    String getDoctype() {
+        return doctype;
+    }
+
+    Document finish() {
+        // Whatever is still open ends with the input; a streamed subtree among it is
+        // complete now
+        while (!openElements.isEmpty()) {
+            popElement();
+        }
+
+        // If no root was created, create a default one
+        if (root == null) {
+            root = arena != null ? arena.createElement("html") : new Element("html");
+        }
+
+        Document document = new Document(root);
+        document.setDoctype(doctype);
+        return document;
+    }
+
+    private void completeSubtree(Element element) {
+        subtreeHandler.accept(element);
+        if (element.getParent() != null) {
+            element.getParent().removeChild(element);
+        }
+    }
+
+    private Element createElement(String name, TagAttributes attributes) {
+        Element element = arena != null ? arena.createElement(name) : new Element(name);
+        for (int i = 0; i < attributes.size(); i++) {
+            element.setAttribute(attributes.name(i),
+                spanMode ? attributes.valueSpan(i) : attributes.value(i));
+        }
+        element.setDeferredAttributes(attributes.deferred(spanMode));
+        return element;
+    }
+}
@@ -4,38 +4,67 @@ import com.tinybrowser.css.CssParser;
 import com.tinybrowser.css.StyleSheet;
 import com.tinybrowser.dom.Document;
 import com.tinybrowser.dom.Element;
+import com.tinybrowser.dom.HtmlSerializer;
 import com.tinybrowser.dom.Node;
 import com.tinybrowser.dom.TextNode;
+import com.tinybrowser.dom.TreeWalker;
 import com.tinybrowser.parser.HtmlParser;
 import com.tinybrowser.style.StyleEngine;
 import com.tinybrowser.style.StyledNode;
 import com.tinybrowser.util.JsonSerializer;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
-
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.servlet.FilterHolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.EnumSet;
 import java.util.Map;
 
 public class BrowserServer {
+    // Request attribute naming an error that hit a response after it started streaming
+    private static final String STREAM_FAILURE = "tinybrowser.streamFailure";
+
     private final Javalin app;
+    private final HtmlParser parser;
 
     public BrowserServer(int port) {
+        this(port, new HtmlParser());
+    }
+
+    // The parser holds only configuration, so all requests share it
+    public BrowserServer(int port, HtmlParser parser) {
+        this.parser = parser;
         app = Javalin.create(config -> {
             config.plugins.enableCors(cors -> {
                 cors.add(it -> {
                     it.anyHost();
                 });
             });
+            config.jetty.contextHandlerConfig(handler -> handler.addFilter(
+                new FilterHolder(failStreamedResponses()), "/*", EnumSet.of(DispatcherType.REQUEST)));
         }).start(port);
         setupRoutes();
     }
 
+    // Port the server listens on; differs from the requested one when that was 0
+    public int getPort() {
+        return app.port();
+    }
+
     private void setupRoutes() {
         app.post("/api/parse", this::handleParse);
+        app.post("/api/serialize", this::handleSerialize);
 
         app.get("/", ctx -> {
-            ctx.result("TinyBrowser Backend API - Ready\n\nEndpoints:\n  POST /api/parse - Parse HTML file");
+            ctx.result("TinyBrowser Backend API - Ready\n\nEndpoints:\n  POST /api/parse - Parse HTML file"
+                + "\n  POST /api/serialize - Parse HTML file and return it re-serialized");
         });
     }
 
@@ -49,9 +78,10 @@ public class BrowserServer {
                 return;
             }
 
-            String html = Files.readString(Path.of(filePath));
+            Path path = Path.of(filePath);
 
-            HtmlParser parser = new HtmlParser();
+            // The response carries the raw text, so read the file once and parse that
+            String html = Files.readString(path);
             Document doc = parser.parseDocument(html);
 
             String css = extractCssFromDocument(doc.getRootElement());
@@ -75,24 +105,77 @@ public class BrowserServer {
         }
     }
 
-    private String extractCssFromDocument(Node node) {
-        StringBuilder css = new StringBuilder();
+    // Streams the normalized HTML straight into the response body. Everything that can be
+    // reported as a JSON error happens before the first byte goes out.
+    private void handleSerialize(Context ctx) {
+        Document doc;
+        try {
+            ParseRequest req = ctx.bodyAsClass(ParseRequest.class);
+            String filePath = req.getFilePath();
+
+            if (filePath == null || filePath.isBlank()) {
+                ctx.status(400).json(Map.of("error", "filePath is required"));
+                return;
+            }
+
+            doc = parser.parseDocument(Path.of(filePath));
+
+        } catch (java.nio.file.NoSuchFileException e) {
+            ctx.status(404).json(Map.of("error", "File not found: " + e.getMessage()));
+            return;
+        } catch (Exception e) {
+            e.printStackTrace();
+            ctx.status(500).json(Map.of("error", "Error serializing file: " + e.getMessage()));
+            return;
+        }
+
+        ctx.contentType("text/html; charset=utf-8");
+        try {
+            HtmlSerializer.writeHtml(doc, ctx.outputStream());
+        } catch (IOException | RuntimeException e) {
+            // Javalin would append its own error body to whatever was already sent, so leave
+            // the failure for the filter below
+            e.printStackTrace();
+            ctx.req().setAttribute(STREAM_FAILURE, e);
+        }
+    }
 
-        if (node instanceof Element) {
-            Element element = (Element) node;
-            if ("style".equals(element.getTagName())) {
+    // Runs after Javalin has finished with a request. If the body already started going
+    // out, an error body would only follow it as garbage: throwing makes the container
+    // drop the connection, so the client sees a failed response rather than a short one.
+    // Otherwise nothing was sent and the client gets a normal JSON error.
+    private static Filter failStreamedResponses() {
+        return (request, response, chain) -> {
+            chain.doFilter(request, response);
+            Object failure = request.getAttribute(STREAM_FAILURE);
+            if (failure == null) {
+                return;
+            }
+            if (response.isCommitted()) {
+                throw new ServletException("Response failed after it was committed", (Throwable) failure);
+            }
+            response.reset();
+            ((HttpServletResponse) response).setStatus(500);
+            response.setContentType("application/json");
+            response.getOutputStream().write(
+                "{\"error\":\"Error serializing file\"}".getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private String extractCssFromDocument(Node root) {
+        StringBuilder css = new StringBuilder();
+        TreeWalker walker = new TreeWalker(root);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            if (node instanceof Element element && "style".equals(element.getTagName())) {
                 for (Node child : element.getChildren()) {
                     if (child instanceof TextNode) {
                         css.append(((TextNode) child).getText()).append("\n");
                     }
                 }
+                walker.skipChildren();
             }
         }
-
-        for (Node child : node.getChildren()) {
-            css.append(extractCssFromDocument(child));
-        }
-
         return css.toString();
     }
 
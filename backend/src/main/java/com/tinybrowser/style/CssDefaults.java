@@ -1,10 +1,15 @@
 package com.tinybrowser.style;
 
+import com.tinybrowser.dom.Atoms;
+
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 public class CssDefaults {
-    private static final Map<String, Map<String, String>> DEFAULT_STYLES = new HashMap<>();
+    // Indexed by Atoms tag id; every tag with defaults has a pre-assigned id
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Map<String, String>[] DEFAULT_STYLES = new Map[Atoms.TAG_COUNT];
 
     static {
         // Block-level elements
@@ -70,15 +75,24 @@ public class CssDefaults {
     }
 
     private static void addDefaults(String tagName, String... properties) {
+        int tagId = Atoms.tagId(tagName);
+        if (tagId == Atoms.UNKNOWN_TAG) {
+            throw new IllegalStateException("No tag id assigned for <" + tagName + ">");
+        }
         Map<String, String> styles = new HashMap<>();
         for (int i = 0; i < properties.length; i += 2) {
             styles.put(properties[i], properties[i + 1]);
         }
-        DEFAULT_STYLES.put(tagName, styles);
+        DEFAULT_STYLES[tagId] = Collections.unmodifiableMap(styles);
     }
 
     public static Map<String, String> getDefaultsFor(String tagName) {
-        return DEFAULT_STYLES.getOrDefault(tagName, new HashMap<>());
+        return getDefaultsFor(Atoms.tagId(tagName));
+    }
+
+    public static Map<String, String> getDefaultsFor(int tagId) {
+        Map<String, String> styles = tagId > 0 && tagId < DEFAULT_STYLES.length ? DEFAULT_STYLES[tagId] : null;
+        return styles != null ? styles : Collections.emptyMap();
     }
 
     public static Map<String, String> getGlobalDefaults() {
@@ -5,6 +5,7 @@ import com.tinybrowser.dom.Document;
 import com.tinybrowser.dom.Element;
 import com.tinybrowser.dom.Node;
 import com.tinybrowser.dom.TextNode;
+import com.tinybrowser.dom.TreeWalker;
 
 import java.util.*;
 
@@ -15,7 +16,7 @@ public class StyleEngine {
             return null;
         }
 
-        return computeStylesForNode(document.getRootElement(), styleSheet, null);
+        return computeStylesForTree(document.getRootElement(), styleSheet);
     }
 
     public StyledNode computeStyles(Node rootNode, StyleSheet styleSheet) {
@@ -23,9 +24,120 @@ public class StyleEngine {
             return null;
         }
 
-        return computeStylesForNode(rootNode, styleSheet, null);
+        return computeStylesForTree(rootNode, styleSheet);
     }
 
+    // Pre-order walk; the styled node of each ancestor is kept by depth, so deep trees
+    // do not recurse
+    private StyledNode computeStylesForTree(Node root, StyleSheet styleSheet) {
+        StyledNode[] ancestors = new StyledNode[32];
+        TreeWalker walker = new TreeWalker(root);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            int depth = walker.depth();
+            StyledNode parent = depth > 0 ? ancestors[depth - 1] : null;
+            StyledNode styledNode = computeStylesForNode(node, styleSheet, parent);
+            if (parent != null) {
+                parent.appendChild(styledNode);
+            }
+            if (depth == ancestors.length) {
+                ancestors = Arrays.copyOf(ancestors, depth * 2);
+            }
+            ancestors[depth] = styledNode;
+        }
+        return ancestors[0];
+    }
+
+    // Restyles a tree after mutations, given the styled tree from the last computeStyles or
+    // restyle of the same root with the same style sheet. A selector only looks at its own element, so a node that is
+    // not dirty and whose parent's styles came out unchanged keeps its previous styled
+    // subtree, which is reused as is; clean subtrees are never walked. Consumes the dirty
+    // flags and takes ownership of the previous tree's nodes.
+    public StyledNode restyle(Node rootNode, StyledNode previous, StyleSheet styleSheet) {
+        if (rootNode == null) {
+            return null;
+        }
+        if (previous == null || previous.getNode() != rootNode) {
+            StyledNode styled = computeStylesForTree(rootNode, styleSheet);
+            rootNode.clearSubtreeDirty();
+            return styled;
+        }
+        if (rootNode.getDirtyFlags() == 0) {
+            return previous;
+        }
+
+        StyledNode[] ancestors = new StyledNode[32];
+        StyledNode[] previousAncestors = new StyledNode[32];
+        boolean[] changed = new boolean[32];
+        // Per depth, where in the previous parent's children the next child is expected
+        int[] cursor = new int[32];
+        TreeWalker walker = new TreeWalker(rootNode);
+        Node node;
+        while ((node = walker.nextPreOrder()) != null) {
+            int depth = walker.depth();
+            StyledNode parent = depth > 0 ? ancestors[depth - 1] : null;
+            boolean parentChanged = depth > 0 && changed[depth - 1];
+            StyledNode before = previous;
+            if (depth > 0) {
+                int index = previousIndex(previousAncestors[depth - 1], cursor[depth - 1], node);
+                before = index >= 0 ? previousAncestors[depth - 1].getChildren().get(index) : null;
+                if (index >= 0) {
+                    cursor[depth - 1] = index + 1;
+                }
+            }
+            int flags = node.getDirtyFlags();
+
+            if (before != null && flags == 0 && !parentChanged) {
+                parent.appendChild(before);
+                walker.skipChildren();
+                continue;
+            }
+
+            StyledNode styledNode;
+            if (before != null && (flags & Node.SELF_DIRTY) == 0 && !parentChanged) {
+                styledNode = new StyledNode(node);
+                styledNode.getComputedStyles().putAll(before.getComputedStyles());
+            } else {
+                styledNode = computeStylesForNode(node, styleSheet, parent);
+            }
+            if (parent != null) {
+                parent.appendChild(styledNode);
+            }
+
+            if (depth == ancestors.length) {
+                ancestors = Arrays.copyOf(ancestors, depth * 2);
+                previousAncestors = Arrays.copyOf(previousAncestors, depth * 2);
+                changed = Arrays.copyOf(changed, depth * 2);
+                cursor = Arrays.copyOf(cursor, depth * 2);
+            }
+            ancestors[depth] = styledNode;
+            previousAncestors[depth] = before;
+            changed[depth] = before == null || !styledNode.getComputedStyles().equals(before.getComputedStyles());
+            cursor[depth] = 0;
+        }
+        rootNode.clearSubtreeDirty();
+        return ancestors[0];
+    }
+
+    // Index of child's styled node among the previous parent's children, or -1. Children
+    // keep their order, so it is at the cursor unless nodes were inserted or moved.
+    private static int previousIndex(StyledNode previousParent, int cursor, Node child) {
+        if (previousParent == null) {
+            return -1;
+        }
+        List<StyledNode> children = previousParent.getChildren();
+        if (cursor < children.size() && children.get(cursor).getNode() == child) {
+            return cursor;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).getNode() == child) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Styles of one node, given the already styled parent
     private StyledNode computeStylesForNode(Node node, StyleSheet styleSheet, StyledNode parent) {
         StyledNode styledNode = new StyledNode(node);
 
@@ -39,7 +151,7 @@ public class StyleEngine {
             }
 
             // Step 2: Apply tag-specific defaults
-            Map<String, String> tagDefaults = CssDefaults.getDefaultsFor(element.getTagName());
+            Map<String, String> tagDefaults = CssDefaults.getDefaultsFor(element.getTagId());
             for (Map.Entry<String, String> entry : tagDefaults.entrySet()) {
                 styledNode.setStyle(entry.getKey(), entry.getValue());
             }
@@ -80,12 +192,6 @@ public class StyleEngine {
             }
         }
 
-        // Recursively compute styles for children
-        for (Node child : node.getChildren()) {
-            StyledNode styledChild = computeStylesForNode(child, styleSheet, styledNode);
-            styledNode.appendChild(styledChild);
-        }
-
         return styledNode;
     }
 
@@ -21,6 +21,7 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class BrowserWindow extends Application {
@@ -159,14 +160,15 @@ public class BrowserWindow extends Application {
         }
 
         try {
-            String htmlContent = Files.readString(Paths.get(filePath));
+            Path path = Paths.get(filePath);
 
-            // Display raw HTML in the content area
-            contentArea.setText(htmlContent);
-
-            // Parse HTML
+            // The raw HTML is displayed too, so read the file once and parse that
+            String html = Files.readString(path);
             HtmlParser parser = new HtmlParser();
-            Document doc = parser.parseDocument(htmlContent);
+            Document doc = parser.parseDocument(html);
+
+            // Display raw HTML in the content area
+            contentArea.setText(html);
             Node domRoot = doc.getRootElement();
 
             // Extract CSS from <style> tags
@@ -286,11 +288,9 @@ public class BrowserWindow extends Application {
             StringBuilder label = new StringBuilder("<" + element.getTagName());
 
             // Add attributes to the label
-            if (!element.getAttributes().isEmpty()) {
-                for (var entry : element.getAttributes().entrySet()) {
-                    label.append(" ").append(entry.getKey())
-                         .append("=\"").append(entry.getValue()).append("\"");
-                }
+            for (int i = 0; i < element.getAttributeCount(); i++) {
+                label.append(" ").append(element.getAttributeName(i))
+                     .append("=\"").append(element.getAttributeValue(i)).append("\"");
             }
             label.append(">");
 
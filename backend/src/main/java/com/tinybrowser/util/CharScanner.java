@@ -0,0 +1,56 @@
+package com.tinybrowser.util;
+
+/**
+ * Delimiter searches over char arrays for the tokenizers. When the jdk.incubator.vector
+ * module is available (run with --add-modules jdk.incubator.vector) the searches compare a
+ * full SIMD register of characters per step; otherwise, or when the system property
+ * tinybrowser.scanner.scalar is true, they fall back to a plain loop.
+ */
+public final class CharScanner {
+    public static final boolean VECTORIZED = vectorSupported();
+
+    private CharScanner() {
+    }
+
+    // Index of the first target in [from, to), or -1
+    public static int indexOf(char[] chars, int from, int to, char target) {
+        if (VECTORIZED) {
+            return VectorCharScanner.indexOf(chars, from, to, target);
+        }
+        for (int i = from; i < to; i++) {
+            if (chars[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Index of the first whitespace or structural CSS character ({ } : ; ,) in [from, to), or -1
+    public static int indexOfCssDelimiter(char[] chars, int from, int to) {
+        if (VECTORIZED) {
+            return VectorCharScanner.indexOfCssDelimiter(chars, from, to);
+        }
+        for (int i = from; i < to; i++) {
+            if (isCssDelimiter(chars[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static boolean isCssDelimiter(char ch) {
+        return ch == '{' || ch == '}' || ch == ':' || ch == ';' || ch == ',' || Character.isWhitespace(ch);
+    }
+
+    private static boolean vectorSupported() {
+        if (Boolean.getBoolean("tinybrowser.scanner.scalar")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorCharScanner.isProfitable();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -6,17 +6,55 @@ import com.tinybrowser.dom.TextNode;
 import com.tinybrowser.style.StyledNode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class JsonSerializer {
 
+    // Iterative, so deep trees do not overflow the stack: the path from the root is kept
+    // as arrays of styled nodes, their JSON and the index of the next child to visit
     public static StyledNodeJson serializeStyledNode(StyledNode styledNode) {
         if (styledNode == null) {
             return null;
         }
 
+        StyledNode[] nodes = new StyledNode[32];
+        StyledNodeJson[] jsons = new StyledNodeJson[32];
+        int[] nextChild = new int[32];
+        StyledNodeJson root = toJson(styledNode);
+        nodes[0] = styledNode;
+        jsons[0] = root;
+        int size = 1;
+
+        while (size > 0) {
+            int top = size - 1;
+            List<StyledNode> children = nodes[top].getChildren();
+            if (nextChild[top] == children.size()) {
+                nodes[top] = null;
+                jsons[top] = null;
+                size--;
+                continue;
+            }
+            StyledNode child = children.get(nextChild[top]++);
+            StyledNodeJson childJson = toJson(child);
+            jsons[top].children.add(childJson);
+
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                jsons = Arrays.copyOf(jsons, size * 2);
+                nextChild = Arrays.copyOf(nextChild, size * 2);
+            }
+            nodes[size] = child;
+            jsons[size] = childJson;
+            nextChild[size] = 0;
+            size++;
+        }
+        return root;
+    }
+
+    private static StyledNodeJson toJson(StyledNode styledNode) {
         Node node = styledNode.getNode();
         StyledNodeJson json = new StyledNodeJson();
 
@@ -24,7 +62,11 @@ public class JsonSerializer {
             Element element = (Element) node;
             json.type = "element";
             json.tagName = element.getTagName();
-            json.attributes = new HashMap<>(element.getAttributes());
+            int count = element.getAttributeCount();
+            json.attributes = new HashMap<>(Math.max(4, count * 2));
+            for (int i = 0; i < count; i++) {
+                json.attributes.put(element.getAttributeName(i), element.getAttributeValue(i));
+            }
         } else if (node instanceof TextNode) {
             TextNode textNode = (TextNode) node;
             json.type = "text";
@@ -32,12 +74,7 @@ public class JsonSerializer {
         }
 
         json.styles = new HashMap<>(styledNode.getComputedStyles());
-
-        json.children = new ArrayList<>();
-        for (StyledNode child : styledNode.getChildren()) {
-            json.children.add(serializeStyledNode(child));
-        }
-
+        json.children = new ArrayList<>(styledNode.getChildren().size());
         return json;
     }
 
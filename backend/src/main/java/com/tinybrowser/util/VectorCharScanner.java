@@ -0,0 +1,75 @@
+package com.tinybrowser.util;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only loaded when CharScanner has confirmed the incubator module is present
+final class VectorCharScanner {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    private VectorCharScanner() {
+    }
+
+    // Narrower than 8 lanes the setup cost outweighs the per-step gain
+    static boolean isProfitable() {
+        return SPECIES.length() >= 8;
+    }
+
+    static int indexOf(char[] chars, int from, int to, char target) {
+        short needle = (short) target;
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Short> hits = ShortVector.fromCharArray(SPECIES, chars, i).eq(needle);
+            if (hits.anyTrue()) {
+                return i + hits.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (chars[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int indexOfCssDelimiter(char[] chars, int from, int to) {
+        int i = from;
+        int last = to - SPECIES.length();
+        while (i <= last) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, chars, i);
+            // Candidates: ASCII control/space, the Unicode whitespace code points and the
+            // structural characters; each is confirmed with the scalar test, which only
+            // rejects ASCII controls and U+2007. Other non-ASCII text is skipped in bulk.
+            VectorMask<Short> candidates = v.compare(VectorOperators.UNSIGNED_LE, (short) ' ')
+                .or(v.sub((short) 0x2000).compare(VectorOperators.UNSIGNED_LE, (short) 0x0A))
+                .or(v.eq((short) 0x1680))
+                .or(v.eq((short) 0x2028))
+                .or(v.eq((short) 0x2029))
+                .or(v.eq((short) 0x205F))
+                .or(v.eq((short) 0x3000))
+                .or(v.eq((short) '{'))
+                .or(v.eq((short) '}'))
+                .or(v.eq((short) ':'))
+                .or(v.eq((short) ';'))
+                .or(v.eq((short) ','));
+            if (!candidates.anyTrue()) {
+                i += SPECIES.length();
+                continue;
+            }
+            int candidate = i + candidates.firstTrue();
+            if (CharScanner.isCssDelimiter(chars[candidate])) {
+                return candidate;
+            }
+            i = candidate + 1;
+        }
+        for (; i < to; i++) {
+            if (CharScanner.isCssDelimiter(chars[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,85 @@
+package com.tinybrowser;
+
+import com.tinybrowser.dom.Document;
+import com.tinybrowser.dom.TextNode;
+import com.tinybrowser.parser.HtmlParser;
+import com.tinybrowser.server.BrowserServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrowserServerTest {
+
+    // Text node that fails once the serializer reaches it
+    private static final class FailingText extends TextNode {
+        FailingText() {
+            super("");
+        }
+
+        @Override
+        public CharSequence getCharacters() {
+            throw new IllegalStateException("serializer failure");
+        }
+    }
+
+    // Parses as usual, then puts a failing node at the end of the body
+    private static final class FailingParser extends HtmlParser {
+        @Override
+        public Document parseDocument(Path file) throws IOException {
+            Document doc = super.parseDocument(file);
+            doc.getElementsByTagName("body").get(0).appendChild(new FailingText());
+            return doc;
+        }
+    }
+
+    private static HttpResponse<String> serialize(BrowserServer server, Path file) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/api/serialize"))
+            .POST(HttpRequest.BodyPublishers.ofString("{\"filePath\":\"" + file.toString().replace("\\", "\\\\") + "\"}"))
+            .build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testSerializeStreamsTheNormalizedHtml() throws Exception {
+        Path file = Files.createTempFile("tinybrowser", ".html");
+        BrowserServer server = new BrowserServer(0);
+        try {
+            Files.writeString(file, "<p>a &amp; b");
+            HttpResponse<String> response = serialize(server, file);
+            assertEquals(200, response.statusCode());
+            assertEquals("<p>a &amp; b</p>", response.body());
+        } finally {
+            server.stop();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testSerializerFailureMidStreamDropsTheConnection() throws Exception {
+        Path file = Files.createTempFile("tinybrowser", ".html");
+        BrowserServer server = new BrowserServer(0, new FailingParser());
+        try {
+            // Far more than the response buffer, so the status and most of the body are
+            // already sent when the serializer fails
+            Files.writeString(file, "<body><p>" + "x".repeat(200000) + "</p></body>");
+            assertThrows(IOException.class, () -> serialize(server, file));
+
+            // Nothing was sent yet, so the client still gets a JSON error
+            Files.writeString(file, "<body><p>short</p></body>");
+            HttpResponse<String> response = serialize(server, file);
+            assertEquals(500, response.statusCode());
+            assertTrue(response.body().contains("\"error\""));
+        } finally {
+            server.stop();
+            Files.delete(file);
+        }
+    }
+}
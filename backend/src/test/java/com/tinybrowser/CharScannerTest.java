@@ -0,0 +1,55 @@
+package com.tinybrowser;
+
+import com.tinybrowser.util.CharScanner;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CharScannerTest {
+
+    @Test
+    void testIndexOfAtEveryOffset() {
+        // Covers hits in the vector body, at lane boundaries and in the scalar tail
+        for (int length = 0; length < 100; length++) {
+            for (int target = 0; target < length; target++) {
+                char[] chars = "a".repeat(length).toCharArray();
+                chars[target] = '<';
+                assertEquals(target, CharScanner.indexOf(chars, 0, length, '<'));
+                assertEquals(-1, CharScanner.indexOf(chars, target + 1, length, '<'));
+            }
+        }
+    }
+
+    @Test
+    void testIndexOfRespectsRange() {
+        char[] chars = "<<abcdefghijklmnopqrstuvwxyz<abc".toCharArray();
+        assertEquals(28, CharScanner.indexOf(chars, 2, chars.length, '<'));
+        assertEquals(-1, CharScanner.indexOf(chars, 2, 28, '<'));
+    }
+
+    @Test
+    void testIndexOfCssDelimiter() {
+        String selector = "div.container-with-a-rather-long-class-name";
+        assertEquals(-1, CharScanner.indexOfCssDelimiter(selector.toCharArray(), 0, selector.length()));
+
+        for (String delimiter : new String[]{"{", "}", ":", ";", ",", " ", "\n", "\t", " "}) {
+            char[] chars = (selector + delimiter + "rest").toCharArray();
+            assertEquals(selector.length(), CharScanner.indexOfCssDelimiter(chars, 0, chars.length));
+        }
+
+        // Non-ASCII characters that are not whitespace are part of the identifier
+        char[] unicode = ("café-" + selector + ";").toCharArray();
+        assertEquals(unicode.length - 1, CharScanner.indexOfCssDelimiter(unicode, 0, unicode.length));
+    }
+
+    @Test
+    void testIndexOfCssDelimiterAgreesWithScalarTestForEveryChar() {
+        // The vector path picks Unicode whitespace out by code point; check it misses none
+        char[] chars = "x".repeat(64).toCharArray();
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            chars[21] = (char) ch;
+            int expected = CharScanner.isCssDelimiter((char) ch) ? 21 : -1;
+            assertEquals(expected, CharScanner.indexOfCssDelimiter(chars, 0, chars.length), "char " + ch);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.tinybrowser;
 
 import com.tinybrowser.css.*;
+import com.tinybrowser.dom.ClassList;
 import com.tinybrowser.dom.Element;
 import org.junit.jupiter.api.Test;
 
@@ -165,6 +166,30 @@ class CssParserTest {
         assertFalse(combined.matches(wrongTag));
     }
 
+    @Test
+    void testClassListIsParsedOnceAndRefreshedOnChange() {
+        Element element = new Element("div");
+        element.setAttribute("class", "  b\ta b\n Card ");
+        ClassList classes = element.getClassList();
+        assertEquals(3, classes.size());
+        assertEquals("b a Card", classes.toString());
+        assertSame(classes, element.getClassList());
+        assertTrue(element.hasClass(new String("a")));
+        assertFalse(element.hasClass("card"));
+
+        Selector selector = new Selector(".Card.a");
+        assertTrue(selector.matches(element));
+
+        element.setAttribute("class", "card a");
+        assertNotSame(classes, element.getClassList());
+        assertFalse(selector.matches(element));
+
+        Element many = new Element("div");
+        many.setAttribute("class", "c0 c1 c2 c3 c4 c5 c6 c7 c8 c9 Card a");
+        assertTrue(selector.matches(many));
+        assertSame(ClassList.EMPTY, new Element("p").getClassList());
+    }
+
     @Test
     void testSpecificity() {
         Selector tagSelector = new Selector("div");
@@ -1,13 +1,34 @@
 package com.tinybrowser;
 
+import com.tinybrowser.css.CssParser;
 import com.tinybrowser.dom.Document;
 import com.tinybrowser.dom.Element;
+import com.tinybrowser.dom.HtmlSerializer;
 import com.tinybrowser.dom.Node;
 import com.tinybrowser.dom.TextNode;
+import com.tinybrowser.dom.TextSpan;
+import com.tinybrowser.dom.TreeWalker;
 import com.tinybrowser.parser.HtmlParser;
+import com.tinybrowser.parser.HtmlTokenHandler;
+import com.tinybrowser.parser.IncrementalHtmlParser;
+import com.tinybrowser.parser.ParseResult;
+import com.tinybrowser.parser.SubtreeFilter;
+import com.tinybrowser.parser.TagAttributes;
+import com.tinybrowser.style.StyleEngine;
+import com.tinybrowser.style.StyledNode;
+import com.tinybrowser.util.JsonSerializer;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -270,4 +291,468 @@ class HtmlParserTest {
         assertTrue(treeString.toLowerCase().contains("p"), "Should contain 'p', got: " + treeString);
         assertTrue(treeString.contains("Hello"), "Should contain 'Hello', got: " + treeString);
     }
+
+    @Test
+    void testParseDocumentFromReader() throws IOException {
+        HtmlParser parser = new HtmlParser();
+        Document doc = parser.parseDocument(new StringReader(
+            "<!DOCTYPE html><html><body><div id=\"main\"><p>Hello</p></div></body></html>"));
+
+        assertTrue(doc.getDoctype().contains("DOCTYPE"));
+        Element main = doc.getElementById("main");
+        assertNotNull(main);
+        assertEquals("Hello", main.getTextContent());
+    }
+
+    @Test
+    void testSpanModeDefersCopies() {
+        HtmlParser parser = new HtmlParser();
+        parser.setSpanMode(true);
+        Node root = parser.parse("<div title=\"big value\"><p>Hello span</p></div>");
+
+        Element div = (Element) root;
+        assertTrue(div.getAttributeCharacters("title") instanceof TextSpan);
+        assertEquals("big value", div.getAttribute("title"));
+        assertTrue(div.getAttributeCharacters("title") instanceof String);
+
+        TextNode text = (TextNode) div.getChildren().get(0).getChildren().get(0);
+        assertTrue(text.getCharacters() instanceof TextSpan);
+        assertEquals("Hello span", div.getTextContent());
+        assertEquals("Hello span", text.getText());
+        assertTrue(text.getCharacters() instanceof String);
+        assertEquals("big value", div.getAttributes().get("title"));
+    }
+
+    @Test
+    void testParseDocumentFromMappedFile() throws IOException {
+        String html = "\uFEFF<html><body><p id=\"greeting\">Grüße 😀 " + "x".repeat(20000) + "</p></body></html>";
+        Path file = Files.createTempFile("tinybrowser", ".html");
+        try {
+            Files.writeString(file, html, StandardCharsets.UTF_8);
+            Document doc = new HtmlParser().parseDocument(file);
+            assertEquals("Grüße 😀 " + "x".repeat(20000), doc.getElementById("greeting").getTextContent());
+            assertEquals("html", doc.getRootElement().getTagName());
+
+            // Pure ASCII never hands the decoder any input before the final flush
+            Files.writeString(file, "<p id=\"ascii\">plain</p>", StandardCharsets.UTF_8);
+            assertEquals("plain", new HtmlParser().parseDocument(file).getElementById("ascii").getTextContent());
+
+            Files.writeString(file, "<p id=\"latin\">café</p>", StandardCharsets.ISO_8859_1);
+            Document latin = new HtmlParser().parseDocument(file, StandardCharsets.ISO_8859_1);
+            assertEquals("café", latin.getElementById("latin").getTextContent());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testIncrementalParserBuildsTreeAsChunksArrive() {
+        String html = "<!DOCTYPE html><html><body><ul id=\"list\"><li>One</li><li>Two</li></ul></body></html>";
+        IncrementalHtmlParser parser = new HtmlParser().incremental();
+
+        parser.feed(html.substring(0, 40));
+        assertNotNull(parser.getRootElement());
+        assertEquals("html", parser.getRootElement().getTagName());
+
+        for (int i = 40; i < html.length(); i += 7) {
+            parser.feed(html.substring(i, Math.min(html.length(), i + 7)));
+        }
+        Document doc = parser.end();
+
+        Document expected = new HtmlParser().parseDocument(html);
+        assertEquals(expected.toString(), doc.toString());
+        assertEquals(2, doc.getElementById("list").getChildren().size());
+        assertThrows(IllegalStateException.class, () -> parser.feed("<p>"));
+    }
+
+    @Test
+    void testIncrementalRawTextAndCommentsSplitAnywhere() {
+        String html = "<html><head><script>f = (a, b) => a > b; s = '</scripty>';</SCRIPT ><style>p>b{}</style>"
+            + "<title>a < b</title></head><body><!-- x > y -- > z --><p>after</p><textarea>1<2</textarea></body></html>";
+        String expected = new HtmlParser().parseDocument(html).toString();
+        for (int size = 1; size <= 13; size++) {
+            IncrementalHtmlParser parser = new HtmlParser().incremental();
+            for (int i = 0; i < html.length(); i += size) {
+                parser.feed(html.substring(i, Math.min(html.length(), i + size)));
+            }
+            assertEquals(expected, parser.end().toString(), "chunk size " + size);
+        }
+    }
+
+    @Test
+    void testParallelParseMatchesSequential() {
+        // Long comments and attribute values full of '<' make many segment cuts land
+        // mid-token, so most segments need their start repaired
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><body>");
+        String noise = "<i>x</i> < ".repeat(3000);
+        for (int i = 0; html.length() < 3 * 1024 * 1024; i++) {
+            html.append("<div id=\"d").append(i).append("\" title=\"").append(i % 7 == 0 ? noise : "a<b")
+                .append("\"><p>Item ").append(i).append("</p>\n  <br/>");
+            if (i % 5 == 0) {
+                html.append("<!-- ").append(noise).append(" -->");
+            }
+            if (i % 9 == 0) {
+                html.append("<script>").append(noise).append("</script>");
+            }
+            html.append("</div>\n");
+        }
+        html.append("</body></html>");
+
+        HtmlParser parser = new HtmlParser();
+        Document expected = parser.parseDocument(html.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Document doc = parser.parseDocumentParallel(html.toString(), pool);
+            assertEquals(expected.toString(), doc.toString());
+            assertEquals(expected.getDoctype(), doc.getDoctype());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testLazyAttributesParsedOnFirstAccess() throws IOException {
+        String html = "<div ID=\"main\" data-x='1' class=\"a b\" onclick=go() data-x=2>"
+            + "<input disabled title=\"x > y\"/></div>";
+        HtmlParser parser = new HtmlParser();
+        parser.setLazyAttributes(true);
+
+        Element div = (Element) parser.parse(html);
+        assertEquals("main", div.getAttribute("id"));
+        assertEquals("a b", div.getAttribute("class"));
+        div.setAttribute("onclick", "stop()");
+        assertEquals("2", div.getAttribute("data-x"));
+        assertEquals("stop()", div.getAttribute("onclick"));
+
+        Element input = (Element) div.getChildren().get(0);
+        assertTrue(input.hasAttribute("disabled"));
+        assertEquals("x > y", input.getAttribute("title"));
+
+        Document eager = new HtmlParser().parseDocument(html);
+        assertEquals(eager.toString(), parser.parseDocument(html).toString());
+        assertEquals(eager.toString(), parser.parseDocument(new StringReader(html)).toString());
+    }
+
+    @Test
+    void testHandlerReceivesTokensWithoutDom() throws IOException {
+        String html = "<!DOCTYPE html><body><a HREF=\"/one?a=1&amp;b=2\">One</a><!-- note -->"
+            + "<img src=x.png/><a name=anchor>Two &amp; three</a></body>";
+        List<String> events = new ArrayList<>();
+        HtmlTokenHandler handler = new HtmlTokenHandler() {
+            @Override
+            public void doctype(CharSequence content) {
+                events.add("doctype " + content);
+            }
+
+            @Override
+            public void startTag(String name, TagAttributes attributes, boolean selfClosing) {
+                events.add((selfClosing ? "empty " : "start ") + name + " " + attributes.get("href"));
+            }
+
+            @Override
+            public void endTag(String name) {
+                events.add("end " + name);
+            }
+
+            @Override
+            public void text(CharSequence text) {
+                events.add("text " + text);
+            }
+        };
+
+        new HtmlParser().parse(html, handler);
+        assertEquals(List.of("doctype !DOCTYPE html", "start body null", "start a /one?a=1&b=2", "text One",
+            "end a", "empty img null", "start a null", "text Two & three", "end a", "end body"), events);
+
+        List<String> streamed = new ArrayList<>(events);
+        events.clear();
+        new HtmlParser().parse(new StringReader(html), handler);
+        assertEquals(streamed, events);
+    }
+
+    @Test
+    void testStreamingModeHandsOutAndDetachesSubtrees() throws IOException {
+        StringBuilder html = new StringBuilder("<html><head><title>Rows</title></head><body><h1>Listing</h1>");
+        for (int i = 0; i < 10000; i++) {
+            html.append("<div class=\"row\"><span>Row ").append(i).append("</span><br/></div>");
+        }
+        html.append("<div class=\"row\"><span>Unclosed");
+
+        List<Element> rows = new ArrayList<>();
+        SubtreeFilter filter = (element, depth) -> depth == 2 && "row".equals(element.getAttribute("class"));
+        Document doc = new HtmlParser().parseDocument(new StringReader(html.toString()), filter, row -> {
+            assertNotNull(row.getParent());
+            rows.add(row);
+        });
+
+        assertEquals(10001, rows.size());
+        assertEquals("Row 42", rows.get(42).getTextContent());
+        assertEquals(2, rows.get(42).getChildren().size());
+        assertNull(rows.get(42).getParent());
+        assertEquals("Unclosed", rows.get(10000).getTextContent());
+
+        Element body = doc.getElementsByTagName("body").get(0);
+        assertEquals(1, body.getChildren().size());
+        assertEquals("h1", ((Element) body.getChildren().get(0)).getTagName());
+    }
+
+    @Test
+    void testCompactDocumentMatchesRegularDocument() throws IOException {
+        String html = "<!DOCTYPE html><html><head><title>T &amp; U</title></head><body>"
+            + "<div id=\"main\" class=\"a b\"><p>One</p><img src=x.png/><p data-x=1>Two</p></div></body></html>";
+        HtmlParser parser = new HtmlParser();
+        Document regular = parser.parseDocument(html);
+        Document compact = parser.parseCompactDocument(html);
+
+        assertEquals(regular.toString(), compact.toString());
+        assertEquals(regular.getDoctype(), compact.getDoctype());
+        assertEquals(new StyleEngine().computeStyles(regular, null).getComputedStyles(),
+            new StyleEngine().computeStyles(compact, null).getComputedStyles());
+        assertEquals(2, compact.getElementsByTagName("p").size());
+        assertEquals("div", compact.getElementById("main").getTagName());
+        assertEquals("1", compact.getElementsByTagName("p").get(1).getAttribute("data-x"));
+        assertEquals(regular.toString(), parser.parseCompactDocument(new StringReader(html)).toString());
+    }
+
+    @Test
+    void testWalkingAWideCompactDocumentStepsThroughSiblings() {
+        String html = "<html><body>" + "<div>x</div>".repeat(20000) + "</body></html>";
+        HtmlParser parser = new HtmlParser();
+        TreeWalker regular = new TreeWalker(parser.parseDocument(html).getRootElement());
+        TreeWalker compact = new TreeWalker(parser.parseCompactDocument(html).getRootElement());
+        int event;
+        int events = 0;
+        while ((event = regular.next()) != TreeWalker.END) {
+            assertEquals(event, compact.next());
+            assertEquals(regular.depth(), compact.depth());
+            assertEquals(regular.node() instanceof Element element ? element.getTagName() : "#text",
+                compact.node() instanceof Element element ? element.getTagName() : "#text");
+            events++;
+        }
+        assertEquals(TreeWalker.END, compact.next());
+        assertEquals(2 * 40002, events);
+    }
+
+    @Test
+    void testParseAllKeepsOrderAndCapturesErrors() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("batch");
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                Path file = dir.resolve("page" + i + ".html");
+                Files.writeString(file, "<!DOCTYPE html" + i + "><html><body><p id=p>" + i + "</p></body></html>");
+                files.add(file);
+            }
+            files.add(5, dir.resolve("missing.html"));
+
+            HtmlParser parser = new HtmlParser();
+            List<ParseResult> results = parser.parseAll(files);
+            assertEquals(21, results.size());
+            assertFalse(results.get(5).isSuccess());
+            assertTrue(results.get(5).getError() instanceof IOException);
+            assertNull(results.get(5).getDocument());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(files.get(i), results.get(i).getPath());
+            }
+            assertTrue(results.get(8).isSuccess(), String.valueOf(results.get(8).getError()));
+            assertEquals("7", results.get(8).getDocument().getElementById("p").getTextContent());
+            assertEquals("!DOCTYPE html7", results.get(8).getDocument().getDoctype());
+
+            List<ParseResult> completed = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try {
+                parser.parseAll(files, executor, 2, completed::add);
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(21, completed.size());
+            assertEquals(20, completed.stream().filter(ParseResult::isSuccess).count());
+            assertThrows(IllegalArgumentException.class, () -> parser.parseAll(files, executor, 0));
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    void testImpliedEndTagsAndStrayEndTags() {
+        HtmlParser parser = new HtmlParser();
+
+        Element list = (Element) parser.parse("<ul><li>One<li>Two<ul><li>Inner</ul><li>Three</ul>");
+        assertEquals(3, list.getChildren().size());
+        assertEquals("TwoInner", list.getChildren().get(1).getTextContent());
+
+        Element body = (Element) parser.parse("<body><p>First<p>Second<div>Block</div></div><br>After</body>");
+        assertEquals(List.of("p", "p", "div", "br"), body.getChildren().stream()
+            .filter(Element.class::isInstance).map(n -> ((Element) n).getTagName()).toList());
+        assertEquals("After", body.getChildren().get(4).getTextContent());
+
+        Element table = (Element) parser.parse(
+            "<table><tr><td>a<td>b<table><tr><td>x</table><tr><td>c</span></table>");
+        assertEquals(2, table.getChildren().size());
+        Element firstRow = (Element) table.getChildren().get(0);
+        assertEquals(2, firstRow.getChildren().size());
+        assertEquals("bx", firstRow.getChildren().get(1).getTextContent());
+
+        Element select = (Element) parser.parse("<select><option>A<option>B<optgroup><option>C</select>");
+        assertEquals(3, select.getChildren().size());
+    }
+
+    @Test
+    void testBadlyNestedPagesStayLinear() {
+        StringBuilder html = new StringBuilder("<body>");
+        for (int i = 0; i < 50000; i++) {
+            html.append("<div><span>x");
+        }
+        html.append("</b></em></i>".repeat(50000)).append("</body>");
+
+        Document doc = new HtmlParser().parseDocument(html.toString());
+
+        // Every div/span stays nested and the stray end tags are dropped
+        assertEquals("body", doc.getRootElement().getTagName());
+        assertEquals(50000, doc.getElementsByTagName("div").size());
+        assertEquals(50000, doc.getElementsByTagName("span").size());
+        assertTrue(doc.getElementsByTagName("b").isEmpty());
+        Element span = doc.getElementsByTagName("span").get(49999);
+        assertEquals("x", span.getTextContent());
+        assertEquals("div", ((Element) span.getParent()).getTagName());
+    }
+
+    @Test
+    void testSerializerWritesEscapedHtmlThatParsesBack() throws IOException {
+        HtmlParser parser = new HtmlParser();
+        String html = "<!DOCTYPE html><html><body><p title=\"a &quot;b&quot; &amp; c\">1 &lt; 2 &amp;&nbsp;3<br></p>"
+            + "<script>if (a < b && c) {}</script></body></html>";
+        Document doc = parser.parseDocument(html);
+
+        String serialized = HtmlSerializer.toHtml(doc.getRootElement());
+        assertEquals("<html><body><p title=\"a &quot;b&quot; &amp; c\">1 &lt; 2 &amp;&nbsp;3<br></p>"
+            + "<script>if (a < b && c) {}</script></body></html>", serialized);
+        assertEquals(doc.getRootElement().toString(), parser.parseDocument(serialized).getRootElement().toString());
+
+        StringBuilder tree = new StringBuilder();
+        HtmlSerializer.writeTree(doc.getRootElement(), tree);
+        assertEquals(doc.getRootElement().toTreeString(), tree.toString());
+
+        Path file = Files.createTempFile("serialized", ".html");
+        try {
+            HtmlSerializer.writeHtml(doc, file);
+            assertEquals("<!DOCTYPE html>" + serialized, Files.readString(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testQuerySelectorUsesIndexesAndMatchesAFullScan() {
+        HtmlParser parser = new HtmlParser();
+        Document doc = parser.parseDocument("<html><body>"
+            + "<div id=\"main\" class=\"box wide\"><p class=\"note\">a</p><p>b</p><span class=\"note\">c</span></div>"
+            + "<p class=\"note wide\">d</p><p id=\"main\">dup</p></body></html>");
+
+        assertEquals(4, doc.getStatistics().getTagCount("p"));
+        assertEquals(3, doc.getStatistics().getClassCount("note"));
+
+        Element main = doc.querySelector("#main");
+        assertEquals("div", main.getTagName());
+        assertEquals(2, doc.querySelectorAll("#main").size());
+        assertEquals("p", doc.querySelector("p#main").getTagName());
+
+        List<Element> notes = doc.querySelectorAll(".note");
+        assertEquals(List.of("a", "c", "d"), notes.stream().map(Element::getTextContent).toList());
+        assertEquals(List.of("d"), doc.querySelectorAll("p.note.wide").stream().map(Element::getTextContent).toList());
+        assertEquals(List.of("a", "c", "d"), doc.querySelectorAll("span, .note").stream().map(Element::getTextContent).toList());
+        assertEquals(8, doc.querySelectorAll("*").size());
+
+        // Scoped to descendants, and the scope itself does not match
+        assertEquals(List.of("a", "c"), main.querySelectorAll(".note").stream().map(Element::getTextContent).toList());
+        assertNull(main.querySelector(".box"));
+        assertEquals("b", main.querySelectorAll("p").get(1).getTextContent());
+
+        // Results follow mutations even though the statistics are not updated
+        Element added = new Element("em");
+        added.setAttribute("class", "note");
+        doc.querySelector("p").appendChild(added);
+        assertEquals(4, doc.querySelectorAll(".note").size());
+        assertSame(added, main.querySelector("em.note"));
+
+        assertThrows(IllegalArgumentException.class, () -> doc.querySelectorAll("div p"));
+        assertThrows(IllegalArgumentException.class, () -> doc.querySelectorAll("p,"));
+        assertThrows(IllegalArgumentException.class, () -> doc.querySelectorAll("a:hover"));
+        assertThrows(IllegalArgumentException.class, () -> doc.querySelectorAll("input[type=x]"));
+        assertThrows(IllegalArgumentException.class, () -> doc.querySelector(":not(p)"));
+    }
+
+    @Test
+    void testDeeplyNestedDocumentsDoNotOverflowTheStack() {
+        int depth = 10000;
+        String html = "<html><body>" + "<div class=\"d\">".repeat(depth) + "<span id=\"leaf\">x</span>"
+            + "</div>".repeat(depth) + "</body></html>";
+        Document doc = new HtmlParser().parseDocument(html);
+
+        assertEquals("x", doc.getRootElement().getTextContent());
+        assertEquals(depth, doc.getElementsByTagName("div").size());
+        assertEquals("span", doc.getElementById("leaf").getTagName());
+        assertTrue(doc.toString().contains("TEXT: \"x\""));
+
+        StyledNode styled = new StyleEngine().computeStyles(doc, new CssParser().parse(".d { color: red; }"));
+        JsonSerializer.StyledNodeJson json = JsonSerializer.serializeStyledNode(styled);
+        for (int i = 0; i < depth + 2; i++) {
+            json = json.children.get(0);
+        }
+        assertEquals("span", json.tagName);
+        assertEquals("red", json.styles.get("color"));
+    }
+
+    @Test
+    void testReparseSplicesEditedElementAndMatchesFullParse() {
+        HtmlParser parser = new HtmlParser();
+        String source = "<html><body><div id=\"a\"><p>Hello <b>world</b></p></div>"
+            + "<ul><li>one<li>two</ul></body></html>";
+        Document doc = parser.parseDocument(source);
+        Element body = (Element) doc.getRootElement().getChildren().get(0);
+        Element div = (Element) body.getChildren().get(0);
+        assertEquals(source.indexOf("<div"), div.getSourceStart());
+        assertEquals(source.indexOf("</div>") + 6, div.getSourceEnd());
+
+        // Stays inside <b>: only its content is parsed again
+        int offset = source.indexOf("world");
+        Document edited = parser.reparse(doc, source, offset, 5, "there<i>!</i>");
+        String updated = source.replace("world", "there<i>!</i>");
+        assertSame(doc, edited);
+        assertSame(div, body.getChildren().get(0));
+        assertEquals(parser.parseDocument(updated).toString(), edited.toString());
+        assertSameRanges(parser.parseDocument(updated).getRootElement(), edited.getRootElement());
+
+        // An end tag that closes an ancestor changes the structure; parsed in full instead
+        offset = updated.indexOf("Hello");
+        Document restructured = parser.reparse(edited, updated, offset, 0, "</div>");
+        String restructuredSource = updated.substring(0, offset) + "</div>" + updated.substring(offset);
+        assertNotSame(edited, restructured);
+        assertEquals(parser.parseDocument(restructuredSource).toString(), restructured.toString());
+
+        // The implicitly closed <li> is not a candidate; its <ul> is
+        offset = updated.indexOf("one");
+        Document listEdit = parser.reparse(edited, updated, offset, 3, "uno");
+        assertSame(edited, listEdit);
+        assertSameRanges(parser.parseDocument(updated.replace("one", "uno")).getRootElement(),
+            listEdit.getRootElement());
+
+        assertThrows(IllegalArgumentException.class, () -> parser.reparse(doc, source, source.length(), 1, ""));
+    }
+
+    private static void assertSameRanges(Node expected, Node actual) {
+        assertEquals(expected.getSourceStart(), actual.getSourceStart());
+        assertEquals(expected.getSourceEnd(), actual.getSourceEnd());
+        if (expected instanceof Element element) {
+            assertEquals(element.getContentStart(), ((Element) actual).getContentStart());
+            assertEquals(element.getContentEnd(), ((Element) actual).getContentEnd());
+        }
+        assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameRanges(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
 }
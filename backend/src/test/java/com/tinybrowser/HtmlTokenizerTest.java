@@ -1,10 +1,15 @@
 package com.tinybrowser;
 
+import com.tinybrowser.parser.HtmlTokenHandler;
 import com.tinybrowser.parser.HtmlTokenizer;
 import com.tinybrowser.parser.Token;
 import com.tinybrowser.parser.TokenType;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class HtmlTokenizerTest {
@@ -232,4 +237,212 @@ class HtmlTokenizerTest {
         assertEquals(TokenType.END_TAG, token2.getType());
         assertEquals("div", token2.getTagName());
     }
+
+    @Test
+    void testReaderInputTokensSpanBufferRefills() {
+        String longText = "x".repeat(500);
+        String longValue = "v".repeat(300);
+        String html = "<!DOCTYPE html><div class=\"" + longValue + "\">" + longText
+            + "<!-- " + "c".repeat(200) + " --></div>";
+        HtmlTokenizer tokenizer = new HtmlTokenizer(new StringReader(html), true, 64);
+
+        Token doctype = tokenizer.nextToken();
+        assertEquals(TokenType.DOCTYPE, doctype.getType());
+
+        Token div = tokenizer.nextToken();
+        assertEquals(TokenType.START_TAG, div.getType());
+        assertEquals(longValue, div.getAttribute("class"));
+
+        Token text = tokenizer.nextToken();
+        assertEquals(TokenType.TEXT, text.getType());
+        assertEquals(longText, text.getContent());
+
+        Token comment = tokenizer.nextToken();
+        assertEquals(TokenType.COMMENT, comment.getType());
+        assertEquals(" " + "c".repeat(200) + " ", comment.getContent());
+
+        assertEquals(TokenType.END_TAG, tokenizer.nextToken().getType());
+        assertEquals(TokenType.EOF, tokenizer.nextToken().getType());
+        assertEquals(html.length(), tokenizer.getPosition());
+    }
+
+    @Test
+    void testReaderInputMatchesStringInput() {
+        String html = "<html><head><title>Test</title></head><body><p class=a>One</p><br/></body></html>";
+        HtmlTokenizer fromString = new HtmlTokenizer(html);
+        HtmlTokenizer fromReader = new HtmlTokenizer(new StringReader(html), true, 64);
+
+        while (true) {
+            Token expected = fromString.nextToken();
+            Token actual = fromReader.nextToken();
+            assertEquals(expected.toString(), actual.toString());
+            if (expected.getType() == TokenType.EOF) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    void testCursorApi() {
+        String html = "<A HREF=\"/x\" title=t>link</A><!--c-->";
+        HtmlTokenizer tokenizer = new HtmlTokenizer(html);
+
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(TokenType.START_TAG, tokenizer.type());
+        assertEquals("A", html.substring(tokenizer.nameStart(), tokenizer.nameEnd()));
+        assertEquals("a", tokenizer.name());
+        assertEquals(2, tokenizer.attrCount());
+        assertEquals("href", tokenizer.attrName(0));
+        assertEquals("/x", tokenizer.attrValue(0));
+        assertEquals("title", tokenizer.attrName(1));
+        assertEquals("t", html.substring(tokenizer.attrValueStart(1), tokenizer.attrValueEnd(1)));
+        assertEquals(0, tokenizer.tokenStart());
+        assertEquals(html.indexOf("link"), tokenizer.tokenEnd());
+
+        assertEquals(TokenType.TEXT, tokenizer.advance());
+        assertEquals(0, tokenizer.attrCount());
+        assertEquals("link", tokenizer.content());
+
+        assertEquals(TokenType.END_TAG, tokenizer.advance());
+        assertEquals("a", tokenizer.name());
+
+        assertEquals(TokenType.COMMENT, tokenizer.advance());
+        assertEquals("c", html.substring(tokenizer.contentStart(), tokenizer.contentEnd()));
+
+        assertEquals(TokenType.EOF, tokenizer.advance());
+        assertThrows(IndexOutOfBoundsException.class, () -> tokenizer.attrName(0));
+    }
+
+    @Test
+    void testIncrementalTokenizerAcrossEveryChunkBoundary() {
+        String html = "<!DOCTYPE html><div class=\"a > b\" id=x>Hello <b>world</b><!-- a -> b -->"
+            + "<script>if (a<b) x = '</div>';</script ></div> tail";
+        List<String> expected = new ArrayList<>();
+        HtmlTokenizer whole = new HtmlTokenizer(html);
+        for (Token token = whole.nextToken(); token.getType() != TokenType.EOF; token = whole.nextToken()) {
+            expected.add(token.toString());
+        }
+
+        for (int split = 0; split <= html.length(); split++) {
+            HtmlTokenizer tokenizer = HtmlTokenizer.incremental();
+            List<String> actual = new ArrayList<>();
+
+            tokenizer.feed(html.substring(0, split));
+            drain(tokenizer, actual);
+            tokenizer.feed(html.substring(split));
+            drain(tokenizer, actual);
+            tokenizer.end();
+            drain(tokenizer, actual);
+
+            assertEquals(expected, actual, "split at " + split);
+            assertEquals(TokenType.EOF, tokenizer.advance());
+        }
+    }
+
+    @Test
+    void testIncrementalTokenizerEmitsCompleteTokensEarly() {
+        HtmlTokenizer tokenizer = HtmlTokenizer.incremental();
+        tokenizer.feed("<p>Hel");
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(TokenType.NEEDS_INPUT, tokenizer.advance());
+
+        tokenizer.feed("lo</p");
+        assertEquals(TokenType.TEXT, tokenizer.advance());
+        assertEquals("Hello", tokenizer.content());
+        assertEquals(TokenType.NEEDS_INPUT, tokenizer.advance());
+
+        tokenizer.feed(">");
+        assertEquals(TokenType.END_TAG, tokenizer.advance());
+        tokenizer.end();
+        assertEquals(TokenType.EOF, tokenizer.advance());
+        assertThrows(IllegalStateException.class, () -> tokenizer.feed("more"));
+        assertThrows(IllegalStateException.class, () -> new HtmlTokenizer("x").feed("y"));
+    }
+
+    private static void drain(HtmlTokenizer tokenizer, List<String> tokens) {
+        for (Token token = tokenizer.nextToken();
+             token.getType() != TokenType.NEEDS_INPUT && token.getType() != TokenType.EOF;
+             token = tokenizer.nextToken()) {
+            tokens.add(token.toString());
+        }
+    }
+
+    @Test
+    void testLazyAttributesKeepOnlyIdAndClass() {
+        HtmlTokenizer tokenizer = new HtmlTokenizer("<a href=\"/x\" class=\"nav\" id=top>");
+        tokenizer.setLazyAttributes(true);
+
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(2, tokenizer.attrCount());
+        assertEquals("class", tokenizer.attrName(0));
+        assertEquals("top", tokenizer.attrValue(1));
+        assertTrue(tokenizer.hasDeferredAttributes());
+        assertEquals(3, tokenizer.attributesStart());
+        assertEquals(31, tokenizer.attributesEnd());
+    }
+
+    @Test
+    void testRawTextElementsEmitOneTextToken() {
+        HtmlTokenizer tokenizer = new HtmlTokenizer(
+            "<SCRIPT>if (a<b && c>d) x = '</div>' + '</scripts>';</Script ><title>a <b> c</title><style></style>");
+
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(TokenType.TEXT, tokenizer.advance());
+        assertEquals("if (a<b && c>d) x = '</div>' + '</scripts>';", tokenizer.content());
+        assertEquals(TokenType.END_TAG, tokenizer.advance());
+        assertEquals("script", tokenizer.name());
+
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(TokenType.TEXT, tokenizer.advance());
+        assertEquals("a <b> c", tokenizer.content());
+        assertEquals(TokenType.END_TAG, tokenizer.advance());
+
+        // An empty body yields no text token
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(TokenType.END_TAG, tokenizer.advance());
+        assertEquals(TokenType.EOF, tokenizer.advance());
+    }
+
+    @Test
+    void testCharacterReferencesAreDecoded() {
+        HtmlTokenizer tokenizer = new HtmlTokenizer("<a href=\"?a=1&amp;b=2&copy=3&lang=en\" title='&#x27;&quot;&#8212;'>"
+            + "Fish &amp; chips &lt;3 &notit; &euro;&#128;&#0; &bogus; &amp</a>"
+            + "<script>a &amp;&amp; b</script><title>&Alpha;&omega;</title>");
+
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals("?a=1&b=2&copy=3&lang=en", tokenizer.attrValue(0));
+        assertEquals("'\"\u2014", tokenizer.attrValueSpan(1).toString());
+
+        assertEquals(TokenType.TEXT, tokenizer.advance());
+        assertEquals("Fish & chips <3 \u00ACit; \u20AC\u20AC\uFFFD &bogus; &", tokenizer.content());
+        assertEquals(tokenizer.content(), tokenizer.contentSpan().toString());
+
+        assertEquals(TokenType.END_TAG, tokenizer.advance());
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(TokenType.TEXT, tokenizer.advance());
+        assertEquals("a &amp;&amp; b", tokenizer.content());
+
+        assertEquals(TokenType.END_TAG, tokenizer.advance());
+        assertEquals(TokenType.START_TAG, tokenizer.advance());
+        assertEquals(TokenType.TEXT, tokenizer.advance());
+        assertEquals("\u0391\u03C9", tokenizer.content());
+    }
+
+    @Test
+    void testEmptyRawTextBodiesProduceNoTextWhenKeepingWhitespace() {
+        String html = "<script></script><style></style><title></title><textarea></textarea><script> </script>";
+        List<String> texts = new ArrayList<>();
+        new HtmlTokenizer(html, false).tokenize(new HtmlTokenHandler() {
+            @Override
+            public void text(CharSequence text) {
+                texts.add(text.toString());
+            }
+        });
+        assertEquals(List.of(" "), texts);
+
+        HtmlTokenizer tokenizer = new HtmlTokenizer("<title></title>", false);
+        assertEquals(TokenType.START_TAG, tokenizer.nextToken().getType());
+        assertEquals(TokenType.END_TAG, tokenizer.nextToken().getType());
+        assertEquals(TokenType.EOF, tokenizer.nextToken().getType());
+    }
 }
@@ -0,0 +1,86 @@
+package com.tinybrowser;
+
+import com.tinybrowser.parser.HtmlTokenizer;
+import com.tinybrowser.parser.TokenType;
+import com.tinybrowser.util.CharScanner;
+
+import java.io.CharArrayReader;
+
+/**
+ * Compares the per-character delimiter loop with CharScanner on a text-heavy page.
+ * Not a unit test; run after test-compile with
+ *
+ *   java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes \
+ *       com.tinybrowser.ScannerBenchmark
+ *
+ * and again with -Dtinybrowser.scanner.scalar=true to time the fallback path.
+ */
+public class ScannerBenchmark {
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        char[] page = textHeavyPage(4 << 20);
+        System.out.println("Vectorized: " + CharScanner.VECTORIZED + ", page: " + page.length + " chars");
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            scalarScan(page);
+            scannerScan(page);
+            tokenize(page);
+        }
+
+        report("charAt loop", page.length, () -> scalarScan(page));
+        report("CharScanner.indexOf", page.length, () -> scannerScan(page));
+        report("HtmlTokenizer (Reader)", page.length, () -> tokenize(page));
+    }
+
+    private static char[] textHeavyPage(int size) {
+        String paragraph = "<p>" + "Lorem ipsum dolor sit amet, consectetur adipiscing elit. ".repeat(40) + "</p>\n";
+        StringBuilder sb = new StringBuilder(size + paragraph.length());
+        sb.append("<html><body>");
+        while (sb.length() < size) {
+            sb.append(paragraph);
+        }
+        sb.append("</body></html>");
+        return sb.toString().toCharArray();
+    }
+
+    private static long scalarScan(char[] page) {
+        long tags = 0;
+        for (int i = 0; i < page.length; i++) {
+            if (page[i] == '<') {
+                tags++;
+            }
+        }
+        return tags;
+    }
+
+    private static long scannerScan(char[] page) {
+        long tags = 0;
+        int i = CharScanner.indexOf(page, 0, page.length, '<');
+        while (i >= 0) {
+            tags++;
+            i = CharScanner.indexOf(page, i + 1, page.length, '<');
+        }
+        return tags;
+    }
+
+    private static long tokenize(char[] page) {
+        HtmlTokenizer tokenizer = new HtmlTokenizer(new CharArrayReader(page), true, 1 << 16);
+        long tokens = 0;
+        while (tokenizer.advance() != TokenType.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    private static void report(String name, int chars, Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double charsPerNs = (double) chars / best;
+        System.out.printf("%-24s %8.2f ms  %6.2f chars/ns%n", name, best / 1e6, charsPerNs);
+    }
+}
@@ -281,4 +281,55 @@ class StyleEngineTest {
         assertEquals("block", styledDiv.getStyleOrDefault("display", "inline"));
         assertEquals("default-value", styledDiv.getStyleOrDefault("non-existent-property", "default-value"));
     }
+
+    @Test
+    void testRestyleReusesCleanSubtreesAndMatchesFullComputation() {
+        HtmlParser parser = new HtmlParser();
+        Document doc = parser.parseDocument("<html><body><div id=\"a\"><p>one</p><p>two</p></div>"
+            + "<div id=\"b\"><span>three</span></div></body></html>");
+        StyleSheet sheet = new CssParser().parse(".hot { color: red; } p { font-size: 12px; }");
+        StyleEngine engine = new StyleEngine();
+
+        StyledNode styled = engine.restyle(doc.getRootElement(), null, sheet);
+        assertFalse(doc.getRootElement().hasDirtyDescendant());
+        assertSame(styled, engine.restyle(doc.getRootElement(), styled, sheet));
+
+        Element a = doc.getElementById("a");
+        Element b = doc.getElementById("b");
+        StyledNode styledB = findStyled(styled, b);
+        a.setAttribute("class", "hot");
+        Element added = new Element("p");
+        added.appendChild(new TextNode("four"));
+        a.appendChild(added);
+        a.removeChild(a.getChildren().get(0));
+
+        StyledNode restyled = engine.restyle(doc.getRootElement(), styled, sheet);
+        assertSame(styledB, findStyled(restyled, b)); // the clean sibling subtree is reused
+        assertEquals("red", findStyled(restyled, added).getStyle("color"));
+        assertSameStyles(engine.computeStyles(doc, sheet), restyled);
+        assertEquals(0, a.getDirtyFlags());
+        assertEquals(0, doc.getRootElement().getDirtyFlags());
+    }
+
+    private static StyledNode findStyled(StyledNode styled, Node node) {
+        if (styled.getNode() == node) {
+            return styled;
+        }
+        for (StyledNode child : styled.getChildren()) {
+            StyledNode found = findStyled(child, node);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameStyles(StyledNode expected, StyledNode actual) {
+        assertSame(expected.getNode(), actual.getNode());
+        assertEquals(expected.getComputedStyles(), actual.getComputedStyles());
+        assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameStyles(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
 }
@@ -1,11 +1,23 @@
 package com.tinybrowser;
 
+import com.tinybrowser.dom.Atoms;
+import com.tinybrowser.dom.ClassList;
+import com.tinybrowser.dom.Document;
+import com.tinybrowser.dom.DomArena;
 import com.tinybrowser.dom.Element;
+import com.tinybrowser.dom.MutationRecord;
 import com.tinybrowser.dom.Node;
+import com.tinybrowser.dom.NodeFilter;
+import com.tinybrowser.dom.NodeIterator;
 import com.tinybrowser.dom.TextNode;
+import com.tinybrowser.dom.TextSpan;
+import com.tinybrowser.dom.TreeWalker;
 import com.tinybrowser.parser.HtmlParser;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TinyBrowserTest {
@@ -30,12 +42,99 @@ class TinyBrowserTest {
         assertFalse(element.hasAttribute("style"));
     }
 
+    @Test
+    void testIndexedAttributeAccessKeepsOrder() {
+        Element element = new Element("input");
+        for (int i = 0; i < 12; i++) {
+            element.setAttribute("data-" + i, "v" + i);
+        }
+        element.setAttribute("DATA-3", "changed");
+
+        assertEquals(12, element.getAttributeCount());
+        assertEquals("data-0", element.getAttributeName(0));
+        assertEquals("changed", element.getAttributeValue(3));
+        assertEquals("v11", element.getAttribute("data-11"));
+        assertFalse(element.hasAttribute("data-12"));
+
+        Map<String, String> view = element.getAttributes();
+        assertSame(view, element.getAttributes());
+        assertEquals(12, view.size());
+        assertEquals("v9", view.get("data-9"));
+        element.setAttribute("title", "t");
+        assertEquals(13, view.size());
+        assertThrows(UnsupportedOperationException.class, () -> view.put("x", "y"));
+
+        Element small = new Element("a");
+        small.setAttribute("href", "/");
+        assertEquals(Map.of("href", "/"), small.getAttributes());
+        assertTrue(new Element("p").getAttributes().isEmpty());
+    }
+
     @Test
     void testTextNodeCreation() {
         TextNode textNode = new TextNode("Hello, World!");
         assertEquals("Hello, World!", textNode.getText());
     }
 
+    @Test
+    void testAtomsAreCanonical() {
+        String div = Atoms.intern("DIV");
+        assertEquals("div", div);
+        assertSame(div, Atoms.intern("div"));
+        assertSame(div, Atoms.intern(new StringBuilder("<Div>"), 1, 4));
+        assertSame(div, new Element("Div").getTagName());
+
+        assertNotEquals(Atoms.UNKNOWN_TAG, Atoms.tagId(div));
+        assertEquals(div, Atoms.tagName(Atoms.tagId(div)));
+        assertEquals(Atoms.BODY, new Element("BODY").getTagId());
+
+        // Other names are canonical only while the shared table has room, see below
+        String custom = Atoms.intern("My-Widget");
+        assertEquals("my-widget", custom);
+        assertEquals(custom, Atoms.intern("my-widget"));
+        assertEquals(Atoms.UNKNOWN_TAG, new Element("my-widget").getTagId());
+    }
+
+    @Test
+    void testParsingStillWorksOnceTheAtomTableIsFull() {
+        for (int i = 0; i < 20000; i++) {
+            Atoms.intern("fill-" + i);
+        }
+        String probe = Atoms.intern("x-overflow-probe");
+        assertEquals("x-overflow-probe", probe);
+        assertNotSame(probe, Atoms.intern(new StringBuilder("X-Overflow-Probe"))); // past the limit
+
+        Document doc = new HtmlParser().parseDocument(
+            "<html><body><x-overflow-probe x-overflow-attr=\"1\"><b>in</b></x-overflow-probe><p>after</p></body></html>");
+        Element body = doc.getElementsByTagName("body").get(0);
+        assertEquals(2, body.getChildren().size()); // the end tag was not dropped
+        assertEquals(1, doc.getElementsByTagName("X-Overflow-Probe").size());
+        assertEquals(1, doc.querySelectorAll("x-overflow-probe").size());
+        Element probeElement = doc.querySelector("x-overflow-probe");
+        assertEquals("1", probeElement.getAttribute("x-overflow-attr"));
+
+        DomArena arena = new DomArena(4);
+        Element element = arena.createElement("div");
+        element.setAttribute("x-overflow-arena", "a");
+        element.setAttribute("X-Overflow-Arena", "b");
+        assertEquals(1, element.getAttributeCount());
+        assertEquals("b", element.getAttribute("x-overflow-arena"));
+    }
+
+    @Test
+    void testTextSpan() {
+        TextSpan span = new TextSpan("<p>Hello, World!</p>", 3, 13);
+        assertEquals(13, span.length());
+        assertEquals('H', span.charAt(0));
+        assertEquals("Hello, World!", span.toString());
+        assertEquals("World", span.subSequence(7, 12).toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> span.charAt(13));
+        assertThrows(IndexOutOfBoundsException.class, () -> new TextSpan("abc", 2, 2));
+
+        TextNode textNode = new TextNode(span);
+        assertEquals("Hello, World!", textNode.getText());
+    }
+
     @Test
     void testNodeHierarchy() {
         Element parent = new Element("div");
@@ -65,6 +164,164 @@ class TinyBrowserTest {
         assertEquals(0, parent.getChildren().size());
     }
 
+    @Test
+    void testDocumentIdIndexFollowsMutations() {
+        Document doc = new HtmlParser().parseDocument(
+            "<html><body><div id=\"a\"><p id=\"dup\">first</p></div><p id=\"dup\">second</p></body></html>");
+        Element body = (Element) doc.getRootElement().getChildren().get(0);
+        Element div = doc.getElementById("a");
+        assertSame(doc, div.getOwnerDocument());
+        assertEquals("first", doc.getElementById("dup").getTextContent());
+
+        // Duplicates resolve in document order, not insertion order
+        Element second = (Element) body.getChildren().get(1);
+        body.removeChild(div);
+        assertNull(doc.getElementById("a"));
+        assertNull(div.getOwnerDocument());
+        assertSame(second, doc.getElementById("dup"));
+        body.appendChild(div);
+        assertSame(second, doc.getElementById("dup"));
+
+        second.setAttribute("id", "b");
+        assertSame(second, doc.getElementById("b"));
+        assertEquals("first", doc.getElementById("dup").getTextContent());
+
+        Element added = new Element("span");
+        added.setAttribute("id", "c");
+        div.appendChild(added);
+        assertSame(added, doc.getElementById("c"));
+        div.removeAllChildren();
+        assertNull(doc.getElementById("c"));
+        assertNull(doc.getElementById("dup"));
+    }
+
+    @Test
+    void testTagAndClassCollectionsAreCachedAndLive() {
+        Document doc = new HtmlParser().parseDocument("<html><body><p class=\"a b\">1</p>"
+            + "<div><p class=\"b\">2</p></div><span class=\"ab\">3</span></body></html>");
+        List<Element> paragraphs = doc.getElementsByTagName("P");
+        assertSame(paragraphs, doc.getElementsByTagName("p"));
+        assertEquals(2, paragraphs.size());
+        assertEquals(2, doc.getElementsByClassName("b").size());
+        assertEquals(1, doc.getElementsByClassName(" b  a ").size());
+        assertTrue(doc.getElementsByClassName("  ").isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> paragraphs.remove(0));
+
+        // An unchanged document keeps the collected list
+        int generation = doc.getGeneration();
+        paragraphs.size();
+        assertEquals(generation, doc.getGeneration());
+
+        Element body = (Element) doc.getRootElement().getChildren().get(0);
+        Element added = new Element("p");
+        body.appendChild(added);
+        assertNotEquals(generation, doc.getGeneration());
+        assertEquals(3, paragraphs.size());
+        assertSame(added, paragraphs.get(2));
+
+        List<Element> bs = doc.getElementsByClassName("b");
+        added.setAttribute("class", "b");
+        assertEquals(3, bs.size());
+        body.removeChild(added);
+        assertEquals(2, bs.size());
+        assertEquals(2, paragraphs.size());
+
+        // Only recent queries are cached, but an evicted collection stays live
+        for (int i = 0; i < 100; i++) {
+            doc.getElementsByClassName("unused-" + i);
+        }
+        assertNotSame(bs, doc.getElementsByClassName("b"));
+        body.appendChild(added);
+        assertEquals(3, bs.size());
+    }
+
+    @Test
+    void testMutationsMarkDirtyAncestorsAndAreRecorded() {
+        Element root = new Element("html");
+        Element body = new Element("body");
+        Element div = new Element("div");
+        TextNode text = new TextNode("old");
+        root.appendChild(body);
+        body.appendChild(div);
+        div.appendChild(text);
+        Document doc = new Document(root);
+        root.clearSubtreeDirty();
+        assertEquals(0, text.getDirtyFlags());
+
+        text.setText("new");
+        assertTrue(text.isSelfDirty());
+        assertEquals(Node.DESCENDANT_DIRTY, div.getDirtyFlags());
+        assertEquals(Node.DESCENDANT_DIRTY, root.getDirtyFlags());
+
+        Element span = new Element("span");
+        body.appendChild(span);
+        assertTrue(span.isSelfDirty());
+        assertTrue(body.isChildrenDirty());
+        assertFalse(body.isSelfDirty());
+        body.clearDirty();
+        assertEquals(Node.DESCENDANT_DIRTY, body.getDirtyFlags());
+
+        root.clearSubtreeDirty();
+        assertEquals(0, root.getDirtyFlags());
+        assertEquals(0, text.getDirtyFlags());
+        assertEquals(0, span.getDirtyFlags());
+
+        doc.setRecordingMutations(true);
+        div.setAttribute("class", "box");
+        body.removeChild(span);
+        text.setText("newer");
+        List<MutationRecord> records = doc.takeMutationRecords();
+        assertEquals(3, records.size());
+        assertEquals(MutationRecord.ATTRIBUTES, records.get(0).getType());
+        assertEquals("class", records.get(0).getAttributeName());
+        assertSame(span, records.get(1).getRemovedNode());
+        assertSame(body, records.get(1).getTarget());
+        assertEquals(MutationRecord.CHARACTER_DATA, records.get(2).getType());
+        assertTrue(doc.takeMutationRecords().isEmpty());
+
+        // Detached nodes are still flagged but belong to no document to record in
+        span.setAttribute("id", "x");
+        assertTrue(span.isSelfDirty());
+        assertTrue(doc.takeMutationRecords().isEmpty());
+        doc.setRecordingMutations(false);
+        div.setAttribute("class", "wide");
+        assertTrue(doc.takeMutationRecords().isEmpty());
+    }
+
+    @Test
+    void testTreeWalkerEventsAndFilteredIteration() {
+        Element root = (Element) new HtmlParser().parse("<div><p>a<b>b</b></p><ul><li>c</li></ul></div>");
+        StringBuilder events = new StringBuilder();
+        TreeWalker walker = new TreeWalker(root);
+        int event;
+        while ((event = walker.next()) != TreeWalker.END) {
+            Node node = walker.node();
+            String name = node instanceof Element element ? element.getTagName() : node.getTextContent();
+            events.append(event == TreeWalker.ENTER ? "+" : "-").append(name).append(walker.depth()).append(' ');
+            if (event == TreeWalker.ENTER && "ul".equals(name)) {
+                walker.skipChildren();
+            }
+        }
+        assertEquals("+div0 +p1 +a2 -a2 +b2 +b3 -b3 -b2 -p1 +ul1 -ul1 -div0 ", events.toString());
+
+        StringBuilder postOrder = new StringBuilder();
+        TreeWalker post = new TreeWalker(root);
+        for (Node node = post.nextPostOrder(); node != null; node = post.nextPostOrder()) {
+            postOrder.append(node instanceof Element element ? element.getTagName() : "#").append(' ');
+        }
+        assertEquals("# # b p # li ul div ", postOrder.toString());
+
+        // Elements only, without descending into <p>
+        NodeIterator iterator = new NodeIterator(root, node -> node instanceof TextNode ? NodeFilter.SKIP
+            : node instanceof Element element && element.getTagName().equals("p") ? NodeFilter.REJECT
+            : NodeFilter.ACCEPT);
+        StringBuilder accepted = new StringBuilder();
+        for (Node node = iterator.nextNode(); node != null; node = iterator.nextNode()) {
+            accepted.append(((Element) node).getTagName()).append(' ');
+        }
+        assertEquals("div ul li ", accepted.toString());
+    }
+
     @Test
     void testHtmlParserExists() {
         HtmlParser parser = new HtmlParser();
@@ -73,4 +330,55 @@ class TinyBrowserTest {
         Node node = parser.parse("<html><body>Test</body></html>");
         assertNotNull(node);
     }
+
+    @Test
+    void testArenaNodesBehaveLikeNodes() {
+        DomArena arena = new DomArena(4);
+        Element parent = arena.createElement("UL");
+        Element first = arena.createElement("li");
+        Element second = arena.createElement("li");
+        parent.appendChild(first);
+        parent.appendChild(second);
+        first.appendChild(arena.createTextNode("One"));
+        second.appendChild(arena.createTextNode("Two"));
+
+        assertEquals("ul", parent.getTagName());
+        assertEquals(2, parent.getChildren().size());
+        assertEquals(first, parent.getChildren().get(0));
+        assertEquals(parent, second.getParent());
+        assertEquals("OneTwo", parent.getTextContent());
+
+        first.setAttribute("class", "a");
+        second.setAttribute("id", "b");
+        first.setAttribute("title", "grown after its neighbour");
+        first.setAttribute("class", "c");
+        assertEquals("c", first.getAttribute("CLASS"));
+        assertEquals("grown after its neighbour", first.getAttribute("title"));
+        assertEquals("b", second.getAttribute("id"));
+        assertEquals(2, first.getAttributes().size());
+
+        // The parsed class list is kept per node and dropped when the class changes
+        ClassList classes = first.getClassList();
+        assertSame(classes, ((Element) parent.getChildren().get(0)).getClassList());
+        first.setAttribute("class", "d e");
+        assertEquals(2, first.getClassList().size());
+        assertTrue(first.hasClass("e"));
+        assertFalse(first.hasClass("c"));
+        first.setAttribute("class", "c");
+
+        parent.removeChild(first);
+        assertNull(first.getParent());
+        assertEquals(1, parent.getChildren().size());
+        parent.appendChild(first);
+        assertEquals(first, parent.getChildren().get(1));
+
+        ((TextNode) second.getChildren().get(0)).setText("Deux");
+        assertEquals("DeuxOne", parent.getTextContent());
+
+        assertThrows(IllegalArgumentException.class, () -> first.appendChild(parent));
+        assertThrows(IllegalArgumentException.class, () -> parent.appendChild(new Element("li")));
+        assertThrows(IllegalArgumentException.class, () -> new Element("ul").appendChild(first));
+        Node text = second.getChildren().get(0);
+        assertThrows(IllegalArgumentException.class, () -> text.appendChild(arena.createTextNode("x")));
+    }
 }